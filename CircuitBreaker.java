@@ -0,0 +1,163 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 搜索引擎熔断器 - 按引擎统计滑动窗口内的验证码比例
+ *
+ * CLOSED：正常放行
+ * OPEN：验证码比例超过阈值，所有请求暂停，冷却结束后进入 HALF_OPEN
+ * HALF_OPEN：只放行一个探测请求，成功则恢复，失败则重新熔断（冷却时间翻倍）
+ */
+public class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int windowSize;          // 滑动窗口大小（最近N次请求）
+    private final int minSamples;          // 窗口内至少N次请求才判断
+    private final double tripRatio;        // 验证码比例阈值
+    private final long baseCooldownMs;     // 初始冷却时间
+    private final long maxCooldownMs;      // 最大冷却时间
+
+    private final boolean[] window;        // true=验证码/限流
+    private int windowPos = 0;
+    private int windowCount = 0;
+    private int blockedInWindow = 0;
+
+    private State state = State.CLOSED;
+    private long openUntil = 0;
+    private long cooldownMs;
+    private boolean probeInFlight = false;
+
+    // 不用 synchronized，避免虚拟线程争锁时钉住载体线程
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public CircuitBreaker(String name, int windowSize, int minSamples, double tripRatio,
+                          long baseCooldownMs, long maxCooldownMs) {
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minSamples = minSamples;
+        this.tripRatio = tripRatio;
+        this.baseCooldownMs = baseCooldownMs;
+        this.maxCooldownMs = maxCooldownMs;
+        this.cooldownMs = baseCooldownMs;
+        this.window = new boolean[windowSize];
+    }
+
+    /**
+     * 请求前调用：熔断期间阻塞等待，直到获得放行
+     */
+    public void awaitPermission() throws InterruptedException {
+        while (true) {
+            long wait = tryAcquire();
+            if (wait <= 0) return;
+            Thread.sleep(Math.min(wait, 1000));
+        }
+    }
+
+    /**
+     * 尝试获得放行，返回 0 表示放行，否则返回建议等待的毫秒数
+     */
+    private long tryAcquire() {
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (state == State.CLOSED) return 0;
+            if (state == State.OPEN) {
+                if (now < openUntil) return openUntil - now;
+                state = State.HALF_OPEN;
+                probeInFlight = false;
+                log("[熔断] " + name + " 冷却结束，进入探测");
+            }
+            // HALF_OPEN：只放行一个探测请求
+            if (probeInFlight) return 500;
+            probeInFlight = true;
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 请求正常返回 */
+    public void recordSuccess() {
+        lock.lock();
+        try {
+            record(false);
+            if (state == State.HALF_OPEN) {
+                state = State.CLOSED;
+                probeInFlight = false;
+                cooldownMs = baseCooldownMs;
+                resetWindow();
+                log("[熔断] " + name + " 探测成功，恢复正常");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 请求遇到验证码或限流 */
+    public void recordBlocked() {
+        lock.lock();
+        try {
+            record(true);
+            if (state == State.HALF_OPEN) {
+                cooldownMs = Math.min(cooldownMs * 2, maxCooldownMs);
+                trip("探测失败");
+                return;
+            }
+            if (state == State.CLOSED && windowCount >= minSamples
+                    && blockedInWindow >= tripRatio * windowCount) {
+                trip(String.format("验证码比例 %d/%d", blockedInWindow, windowCount));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 网络异常等与封锁无关的失败：释放探测名额，不计入窗口 */
+    public void recordIgnored() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) probeInFlight = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isOpen() {
+        lock.lock();
+        try {
+            return state != State.CLOSED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void trip(String reason) {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + cooldownMs;
+        probeInFlight = false;
+        log("[熔断] " + name + " ⛔ 暂停 " + cooldownMs / 1000 + " 秒 (" + reason + ")");
+    }
+
+    private void record(boolean blocked) {
+        if (windowCount == windowSize) {
+            if (window[windowPos]) blockedInWindow--;
+        } else {
+            windowCount++;
+        }
+        window[windowPos] = blocked;
+        if (blocked) blockedInWindow++;
+        windowPos = (windowPos + 1) % windowSize;
+    }
+
+    private void resetWindow() {
+        java.util.Arrays.fill(window, false);
+        windowPos = 0;
+        windowCount = 0;
+        blockedInWindow = 0;
+    }
+
+    private static void log(String msg) {
+        System.out.println("[" + java.time.LocalTime.now().toString().substring(0, 8) + "] " + msg);
+    }
+}
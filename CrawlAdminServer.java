@@ -0,0 +1,125 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+
+/**
+ * 爬虫管理端口（本地 HTTP，仅监听 127.0.0.1）
+ *
+ * GET  /admin/status                        当前进度、调度器状态、运行参数
+ * POST /admin/set?concurrency=5&minDelayMs=1000&maxDelayMs=3000&maxRetries=3&timeoutMs=20000&proxyApiUrl=...
+ *                                           （参数也可放在 application/x-www-form-urlencoded 请求体里）
+ * POST /admin/pause | /admin/resume         暂停/恢复派发新任务（在途任务继续）
+ * POST /admin/drain                         不再派发，在途任务完成后正常收尾退出
+ * POST /admin/refill                        重新调用代理API补充代理
+ *
+ * 防止本机浏览器里的网页调用：Host 必须是 127.0.0.1:端口、localhost:端口 或 [::1]:端口（挡 DNS 重绑定），
+ * 带 Origin 时必须是其中之一的 http 源（挡跨站表单 POST），修改操作只接受 POST
+ */
+public class CrawlAdminServer {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private HttpServer server;
+    private Set<String> hosts;      // 允许的 Host 头
+    private Set<String> origins;    // 允许的 Origin 头
+
+    public void start(int port) throws Exception {
+        hosts = Set.of("127.0.0.1:" + port, "localhost:" + port, "[::1]:" + port);
+        origins = Set.of("http://127.0.0.1:" + port, "http://localhost:" + port, "http://[::1]:" + port);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/admin/", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        log("[管理] 已启动: http://127.0.0.1:" + port + "/admin/status（Host 也可写 localhost / [::1]，修改操作用 POST）");
+    }
+
+    /** 爬取结束时关闭（HTTP 服务线程不是守护线程，不关闭进程不会退出） */
+    public void stop() {
+        if (server != null) server.stop(0);
+    }
+
+    private void handle(HttpExchange ex) {
+        String action = ex.getRequestURI().getPath().substring("/admin/".length());
+        String method = ex.getRequestMethod();
+        try {
+            String reqHost = ex.getRequestHeaders().getFirst("Host");
+            String reqOrigin = ex.getRequestHeaders().getFirst("Origin");
+            if (reqHost == null || !hosts.contains(reqHost.toLowerCase())
+                    || (reqOrigin != null && !origins.contains(reqOrigin.toLowerCase()))) {
+                log("[管理] ✗ 拒绝非本机来源的请求: Host=" + reqHost + " Origin=" + reqOrigin);
+                send(ex, 403, Map.of("error", "只接受 Host 为 " + String.join(" / ", new TreeSet<>(hosts)) + " 的本机请求"));
+                return;
+            }
+            String allowed = action.equals("status") ? "GET" : "POST";
+            if (!allowed.equals(method)) {
+                ex.getResponseHeaders().set("Allow", allowed);
+                send(ex, 405, Map.of("error", action + " 只接受 " + allowed));
+                return;
+            }
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            switch (action) {
+                case "status" -> { }
+                case "set" -> {
+                    Map<String, String> params = parseQuery(ex.getRequestURI().getRawQuery());
+                    params.putAll(parseQuery(new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+                    GoogleSearchCrawler.applySettings(params);
+                }
+                case "pause" -> GoogleSearchCrawler.pause();
+                case "resume" -> GoogleSearchCrawler.resume();
+                case "drain" -> GoogleSearchCrawler.drain();
+                case "refill" -> GoogleSearchCrawler.refillProxies();
+                default -> {
+                    send(ex, 404, Map.of("error", "未知操作: " + action));
+                    return;
+                }
+            }
+            body.put("ok", true);
+            body.put("action", action);
+            body.put("status", GoogleSearchCrawler.status());
+            send(ex, 200, body);
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log("[管理] ✗ " + action + ": " + e.getMessage());
+            send(ex, 500, Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    private void send(HttpExchange ex, int code, Object body) {
+        try (OutputStream os = ex.getResponseBody()) {
+            byte[] bytes = mapper.writeValueAsBytes(body);
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            ex.sendResponseHeaders(code, bytes.length);
+            os.write(bytes);
+        } catch (Exception e) {
+            log("[管理] 响应失败: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> map = new HashMap<>();
+        if (query == null || query.isEmpty()) return map;
+        for (String pair : query.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx <= 0) continue;
+            map.put(URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    private static void log(String msg) {
+        System.out.println("[" + java.time.LocalTime.now().toString().substring(0, 8) + "] " + msg);
+    }
+}
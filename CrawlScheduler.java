@@ -0,0 +1,244 @@
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 爬取调度器 - 新任务队列 + 延迟重试优先队列
+ *
+ * 取任务优先级：已到期的重试 > 新公司 > 未到期的重试（等待到期）
+ * 失败按原因分类：只有临时性失败（网络、验证码、空结果）才按指数退避重新入队，
+ * 超过最大尝试次数或永久性失败不再重试
+ *
+ * 并发上限、暂停、排空都在 take() 里生效，运行中修改不影响在途任务
+ *
+ * take() 占用一个在途名额，complete() 只登记结果，名额由 release() 归还；
+ * 工作线程保存结果、请求间隔休眠之后再 release()，并发上限才能真正限制请求节奏
+ */
+public class CrawlScheduler {
+
+    /** 失败原因 */
+    enum Failure {
+        NETWORK(true),      // 请求失败/超时/5xx
+        BLOCKED(true),      // 验证码/限流
+        NO_RESULTS(true),   // 搜索页无结果（多为软封锁）
+        NO_MATCH(false),    // 有结果但无匹配
+        ERROR(false);       // 其他异常
+
+        final boolean retryable;
+
+        Failure(boolean retryable) {
+            this.retryable = retryable;
+        }
+    }
+
+    /** 任务处理后的去向 */
+    enum Disposition { DONE, RETRY, GAVE_UP }
+
+    static class WorkItem {
+        final String company;
+        final int attempt;          // 第几次尝试（从1开始）
+        final long dueAt;           // 到期时间（新任务为0）
+        final Failure lastFailure;
+
+        WorkItem(String company, int attempt, long dueAt, Failure lastFailure) {
+            this.company = company;
+            this.attempt = attempt;
+            this.dueAt = dueAt;
+            this.lastFailure = lastFailure;
+        }
+    }
+
+    private int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final Random random = new Random();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<WorkItem> freshQueue = new ArrayDeque<>();
+    private final PriorityQueue<WorkItem> retryQueue =
+            new PriorityQueue<>(Comparator.comparingLong(w -> w.dueAt));
+    private final List<WorkItem> gaveUp = new ArrayList<>();
+    private int inFlight = 0;
+    private int maxInFlight = Integer.MAX_VALUE;
+    private boolean paused = false;
+    private boolean draining = false;
+
+    public CrawlScheduler(int maxAttempts, long baseBackoffMs, long maxBackoffMs) {
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    public void submit(String company) {
+        lock.lock();
+        try {
+            freshQueue.add(new WorkItem(company, 1, 0, null));
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取下一个任务，必要时等待重试到期、在途数低于上限或恢复运行；
+     * 全部完成（无排队、无在途）或排空结束时返回 null
+     */
+    public WorkItem take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                if (draining) {
+                    if (inFlight == 0) return null;
+                    changed.await();
+                    continue;
+                }
+                WorkItem head = retryQueue.peek();
+                if (head == null && freshQueue.isEmpty() && inFlight == 0) {
+                    changed.signalAll();
+                    return null;
+                }
+                if (paused || inFlight >= maxInFlight) {
+                    changed.await();
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                if (head != null && head.dueAt <= now) {
+                    inFlight++;
+                    return retryQueue.poll();
+                }
+                if (!freshQueue.isEmpty()) {
+                    inFlight++;
+                    return freshQueue.poll();
+                }
+                if (head != null) {
+                    changed.await(head.dueAt - now, TimeUnit.MILLISECONDS);
+                } else {
+                    changed.await();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 报告任务结果；failure 为 null 表示成功。不归还在途名额，见 release()
+     */
+    public Disposition complete(WorkItem item, Failure failure) {
+        lock.lock();
+        try {
+            if (failure == null || !failure.retryable) return Disposition.DONE;
+            if (item.attempt >= maxAttempts) {
+                gaveUp.add(item);
+                return Disposition.GAVE_UP;
+            }
+            long backoff = backoffMs(item.attempt);
+            retryQueue.add(new WorkItem(item.company, item.attempt + 1,
+                    System.currentTimeMillis() + backoff, failure));
+            return Disposition.RETRY;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 归还 take() 占用的在途名额，每个任务恰好调用一次（在 complete() 之后） */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 并发上限（在途任务数），调小时等在途任务完成后生效 */
+    public void setMaxInFlight(int n) {
+        lock.lock();
+        try {
+            maxInFlight = n;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setMaxAttempts(int n) {
+        lock.lock();
+        try {
+            maxAttempts = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 暂停/恢复派发新任务，在途任务继续执行 */
+    public void setPaused(boolean p) {
+        lock.lock();
+        try {
+            paused = p;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 排空：不再派发任何任务，等在途任务完成后 take() 返回 null。
+     * 未派发的公司没有写入进度，下次运行会重新处理
+     */
+    public void drain() {
+        lock.lock();
+        try {
+            draining = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 当前状态快照 */
+    public Map<String, Object> status() {
+        lock.lock();
+        try {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("state", draining ? "draining" : paused ? "paused" : "running");
+            m.put("inFlight", inFlight);
+            m.put("maxInFlight", maxInFlight);
+            m.put("maxAttempts", maxAttempts);
+            m.put("queued", freshQueue.size());
+            m.put("pendingRetries", retryQueue.size());
+            m.put("gaveUp", gaveUp.size());
+            return m;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 第 attempt 次失败后的退避时间：base * 2^(attempt-1)，±20% 抖动 */
+    long backoffMs(int attempt) {
+        long delay = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        double jitter = 0.8 + random.nextDouble() * 0.4;
+        return (long) (delay * jitter);
+    }
+
+    public int pendingRetries() {
+        lock.lock();
+        try {
+            return retryQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int gaveUpCount() {
+        lock.lock();
+        try {
+            return gaveUp.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * CSV 结果输出（追加写）
+ */
+public class CsvResultSink implements ResultSink {
+
+    static final String HEADER = "\uFEFF公司名称,邮箱,法人,官网,备注\n";
+
+    private final Path file;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Consumer<GoogleSearchCrawler.CompanyInfo> onPersisted = info -> { };
+
+    public CsvResultSink(String file) {
+        this.file = Paths.get(file);
+        try {
+            if (!Files.exists(this.file)) {
+                Files.writeString(this.file, HEADER, StandardCharsets.UTF_8);
+            }
+        } catch (Exception e) { }
+    }
+
+    @Override
+    public void setOnPersisted(Consumer<GoogleSearchCrawler.CompanyInfo> listener) {
+        onPersisted = listener;
+    }
+
+    @Override
+    public void save(GoogleSearchCrawler.CompanyInfo info) {
+        String emails = String.join("; ", info.emails);
+        String line = toLine(info.companyName, emails, info.legalPerson, info.website);
+        log("[CSV保存] 写入: " + info.companyName + " | 邮箱: " + (emails.isEmpty() ? "无" : emails) + " | 官网: " + info.website);
+
+        boolean written = false;
+        lock.lock();
+        try {
+            Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log("[CSV保存] ✓ 成功");
+            written = true;
+        } catch (Exception e) {
+            log("[CSV保存] ✗ 失败: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+        if (written) onPersisted.accept(info);
+    }
+
+    static String toLine(String company, String emails, String legal, String website) {
+        String remark = GoogleSearchCrawler.isFound(website) ? "已找到" : "未找到官网";
+        return String.format("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"\n",
+            esc(company), esc(emails), esc(legal), esc(website), remark);
+    }
+
+    static String esc(String s) {
+        return s == null ? "" : s.replace("\"", "\"\"").replace("\n", " ");
+    }
+
+    /** 读取 toLine 写出的 CSV，按公司名去重（同名取最后一行） */
+    static Map<String, GoogleSearchCrawler.CompanyInfo> readAll(Path file) throws IOException {
+        Map<String, GoogleSearchCrawler.CompanyInfo> map = new LinkedHashMap<>();
+        if (!Files.exists(file)) return map;
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.length() < 2) continue;
+            String[] f = line.substring(1, line.length() - 1).split("\",\"", -1);
+            if (f.length < 4) continue;
+            GoogleSearchCrawler.CompanyInfo info = new GoogleSearchCrawler.CompanyInfo();
+            info.companyName = f[0].replace("\"\"", "\"");
+            if (!f[1].isEmpty()) info.emails.addAll(Arrays.asList(f[1].split("; ")));
+            info.legalPerson = f[2].replace("\"\"", "\"");
+            info.website = f[3].replace("\"\"", "\"");
+            map.put(info.companyName, info);
+        }
+        return map;
+    }
+
+    private static void log(String msg) {
+        System.out.println("[" + java.time.LocalTime.now().toString().substring(0, 8) + "] " + msg);
+    }
+}
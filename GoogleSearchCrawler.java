@@ -7,11 +7,13 @@ import okhttp3.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,10 +27,13 @@ public class GoogleSearchCrawler {
     }
 
     // ============ 配置区 ============
+    // 并发、延迟、重试、超时、代理API 为默认值，运行中可通过管理端口修改（见 CrawlAdminServer）
     private static final int CONCURRENCY = 3;              // 并发数（测试用3个）
     private static final int MIN_DELAY_MS = 2000;          // 最小延迟（每个IP间隔2秒）
     private static final int MAX_DELAY_MS = 4000;          // 最大延迟
     private static final int MAX_RETRIES = 2;              // 最大重试次数（减少重试，节省IP）
+    private static final int RETRY_BASE_DELAY_MS = 30000;  // 重试退避基数（30秒起，指数递增）
+    private static final int RETRY_MAX_DELAY_MS = 600000;  // 重试退避上限（10分钟）
     private static final int TIMEOUT_MS = 15000;           // 请求超时
     private static final String INPUT_FILE = "src/faren.xlsx";
     private static final int COMPANY_COLUMN = 1;           // B列=公司名
@@ -38,9 +43,19 @@ public class GoogleSearchCrawler {
     private static final int REMARK_COLUMN = 6;            // G列=备注
     private static final String OUTPUT_CSV = "results.csv";
     private static final String PROGRESS_FILE = "progress.txt";
+    private static final String RESULT_DB = "results.db";  // 结果库（SQLite），CSV/xlsx 从库导出
+    private static final boolean USE_RESULT_DB = true;     // false=只追加写 CSV（旧模式）
+    private static final long REFRESH_TTL_MS = 30L * 24 * 3600 * 1000;  // 刷新模式：超过30天的结果重新抓取官网
+    private static final boolean ARCHIVE_PAGES = true;     // 搜索页/官网原始页面写入归档，供离线重新提取
+    private static final String REEXTRACT_CSV = "results.reextract.csv";
+    private static final String REEXTRACT_DIFF = "results.reextract.diff.csv";
+    private static final String FAILED_FILE = "failed.txt";  // 重试耗尽的公司（未记入进度）
+    private static final int MAX_QUERY_VARIANTS = 3;       // 每家公司最多尝试几种查询写法
+    private static final String QUERY_STATS_FILE = "query_stats.tsv";  // 查询变体命中率/流量统计，跨运行累积
     
     // Cliproxy代理API配置（台湾住宅IP，测试用3个）
     private static final String PROXY_API_URL = "https://ipapi.cliproxy.com/start?key=u6j7vdprilup4u8ssokb&port=443&num=3&country=TW&state=&type=2";
+    private static final int ADMIN_PORT = 8766;            // 管理端口（仅监听127.0.0.1）
     private static final int PROXY_POOL_MIN_SIZE = 1;      // 有代理就启动
     private static final int PROXY_LIFETIME_MS = 86400000; // 不自动过期（24小时）
 
@@ -54,32 +69,79 @@ public class GoogleSearchCrawler {
     private static final Pattern EMAIL_PATTERN = Pattern.compile("[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}");
     private static final Random random = new Random();
     
-    // 代理池：轮换使用
-    private static final List<String> proxyList = Collections.synchronizedList(new ArrayList<>());
+    // 代理池：轮换使用（写少读多，用写时复制；可用代理另存一份快照，取代理时不加锁、不过滤）
+    private static final CopyOnWriteArrayList<String> proxyList = new CopyOnWriteArrayList<>();
+    private static final AtomicReference<List<String>> availableProxies = new AtomicReference<>(List.of());
     private static final AtomicInteger proxyIndex = new AtomicInteger(0);
     private static final Map<String, AtomicInteger> proxyUsageCount = new ConcurrentHashMap<>();  // 每个IP使用次数
     private static final Set<String> failedProxies = ConcurrentHashMap.newKeySet();  // 失败的代理
+
+    // 验证码/限流检测：只嗅探响应开头，命中后不再读取完整内容
+    private static final int SNIFF_BYTES = 4096;
+    private static final String[] BLOCK_MARKERS = {"unusual traffic", "/sorry/", "recaptcha", "captcha-form"};
+    // 谷歌"确实没有结果"的提示；结果页没有结果条目又没有这些提示时视为软封锁
+    private static final String[] NO_RESULT_MARKERS = {"did not match any documents", "找不到符合搜尋字詞", "找不到和您查询的", "沒有任何相符"};
+    // 谷歌熔断器：最近20次请求中验证码比例超过30%时暂停全部谷歌请求（1分钟起，最长15分钟）
+    private static final CircuitBreaker googleBreaker = new CircuitBreaker("Google", 20, 5, 0.3, 60_000, 15 * 60_000);
+    private static final QueryPlanner planner = new QueryPlanner(MAX_QUERY_VARIANTS);
+    // 每家公司本轮查询的进度，跨调度器重试保留，完成或放弃后移除
+    private static final Map<String, QueryProgress> queryProgress = new ConcurrentHashMap<>();
     
     private static final Set<String> completedCompanies = ConcurrentHashMap.newKeySet();
-    private static final List<CompanyInfo> resultList = Collections.synchronizedList(new ArrayList<>());
+    private static final Queue<CompanyInfo> resultList = new ConcurrentLinkedQueue<>();  // 仅CSV模式使用
+    static ResultSink resultSink;
+
+    // 搜索地址（测试时指向本地桩服务）
+    static String searchBaseUrl = "https://" + GOOGLE_DOMAIN;
+    // 是否用结果库（测试时关掉，走 CSV 追加）
+    static boolean useResultDb = USE_RESULT_DB;
     private static final Map<String, String> companyLegalMap = new ConcurrentHashMap<>();
     private static final Map<String, Integer> companyRowMap = new ConcurrentHashMap<>();
     
+    private static final CrawlScheduler scheduler =
+        new CrawlScheduler(MAX_RETRIES + 1, RETRY_BASE_DELAY_MS, RETRY_MAX_DELAY_MS);
+
+    // 运行时参数（管理端口可改，立即生效）
+    private static volatile int concurrency = CONCURRENCY;
+    private static volatile int minDelayMs = MIN_DELAY_MS;
+    private static volatile int maxDelayMs = MAX_DELAY_MS;
+    private static volatile int maxRetries = MAX_RETRIES;
+    private static volatile int timeoutMs = TIMEOUT_MS;
+    private static volatile String proxyApiUrl = PROXY_API_URL;
+
     private static final AtomicInteger totalProcessed = new AtomicInteger(0);
     private static final AtomicInteger successCount = new AtomicInteger(0);
     private static final AtomicInteger failCount = new AtomicInteger(0);
     private static int totalCompanies = 0;
 
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("refresh")) {
+            runRefresh();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("reextract")) {
+            runReextract();
+            return;
+        }
+
         System.out.println("========================================");
         System.out.println("  谷歌搜索爬虫 - 代理池版本");
-        System.out.println("  并发数: " + CONCURRENCY);
+        System.out.println("  并发数: " + concurrency);
+        System.out.println("  管理端口: http://127.0.0.1:" + ADMIN_PORT + "/admin/status");
         System.out.println("========================================\n");
 
+        CrawlAdminServer admin = new CrawlAdminServer();
+        try {
+            admin.start(ADMIN_PORT);
+        } catch (Exception e) {
+            log("❌ 管理端口启动失败: " + e.getMessage());
+        }
+
         fetchAllProxies();       // 一次性获取所有代理
         waitForProxyPool();      // 等待代理池就绪
+        openResultSink();
         loadProgress();
-        initCsvFile();
+        planner.load(QUERY_STATS_FILE);
         
         List<String> companies = loadCompanies();
         totalCompanies = companies.size();
@@ -88,34 +150,336 @@ public class GoogleSearchCrawler {
         startProgressMonitor();
 
         long startTime = System.currentTimeMillis();
-        
+        crawl(companies);
+
+        resultSink.flush();
+        if (resultSink instanceof SqliteResultStore store) {
+            store.exportCsv(OUTPUT_CSV);
+        }
+        updateSourceExcel();
+        resultSink.close();
+        planner.save(QUERY_STATS_FILE);
+        admin.stop();
+
+        long elapsed = (System.currentTimeMillis() - startTime) / 1000;
+        Map<String, Object> cost = planner.summary();
+        System.out.println("\n========================================");
+        System.out.println("  爬取完成！总耗时: " + elapsed + " 秒");
+        System.out.println("  成功: " + successCount.get() + " | 失败: " + failCount.get()
+            + " | 重试耗尽: " + scheduler.gaveUpCount());
+        System.out.println("  搜索请求: " + cost.get("requests") + " | 每个官网平均请求: " + cost.get("requestsPerMatch")
+            + " | 每个官网平均流量: " + cost.get("kbPerMatch") + " KB");
+        System.out.println("========================================");
+    }
+
+    /**
+     * 把公司交给调度器并逐个派发，全部完成（或排空）后返回。
+     * 并发上限由调度器控制，每个任务一个虚拟线程，运行中调整并发不影响在途任务
+     */
+    static void crawl(List<String> companies) {
+        companies.forEach(scheduler::submit);
+        scheduler.setMaxInFlight(concurrency);
+        scheduler.setMaxAttempts(maxRetries + 1);
+
         try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            Semaphore semaphore = new Semaphore(CONCURRENCY);
+            CrawlScheduler.WorkItem item;
+            while ((item = scheduler.take()) != null) {
+                CrawlScheduler.WorkItem task = item;
+                // 名额在处理、保存、请求间隔休眠都结束后才归还，下一家公司不会提前发出
+                executor.submit(() -> {
+                    try {
+                        processCompany(task);
+                    } finally {
+                        scheduler.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ============ 运行时控制 ============
+
+    /**
+     * 修改运行时参数，只改传入的项；参数不合法时抛 IllegalArgumentException，不做任何修改
+     */
+    static void applySettings(Map<String, String> params) {
+        int newConcurrency = intSetting(params, "concurrency", concurrency, 1);
+        int newMinDelay = intSetting(params, "minDelayMs", minDelayMs, 0);
+        int newMaxDelay = intSetting(params, "maxDelayMs", maxDelayMs, 0);
+        int newMaxRetries = intSetting(params, "maxRetries", maxRetries, 0);
+        int newTimeout = intSetting(params, "timeoutMs", timeoutMs, 1000);
+        String newProxyApi = params.getOrDefault("proxyApiUrl", proxyApiUrl);
+        if (newMaxDelay < newMinDelay) {
+            throw new IllegalArgumentException("maxDelayMs 不能小于 minDelayMs");
+        }
+        if (!newProxyApi.startsWith("http")) {
+            throw new IllegalArgumentException("proxyApiUrl 无效");
+        }
+
+        concurrency = newConcurrency;
+        minDelayMs = newMinDelay;
+        maxDelayMs = newMaxDelay;
+        maxRetries = newMaxRetries;
+        timeoutMs = newTimeout;
+        proxyApiUrl = newProxyApi;
+        scheduler.setMaxInFlight(newConcurrency);
+        scheduler.setMaxAttempts(newMaxRetries + 1);
+        log("[管理] 参数已更新: " + settings());
+    }
+
+    private static int intSetting(Map<String, String> params, String name, int current, int min) {
+        String v = params.get(name);
+        if (v == null) return current;
+        int n;
+        try {
+            n = Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " 不是整数: " + v);
+        }
+        if (n < min) throw new IllegalArgumentException(name + " 不能小于 " + min);
+        return n;
+    }
+
+    static Map<String, Object> settings() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("concurrency", concurrency);
+        m.put("minDelayMs", minDelayMs);
+        m.put("maxDelayMs", maxDelayMs);
+        m.put("maxRetries", maxRetries);
+        m.put("timeoutMs", timeoutMs);
+        m.put("proxyApiUrl", proxyApiUrl.replaceAll("key=[^&]*", "key=***"));
+        return m;
+    }
+
+    static Map<String, Object> status() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("processed", totalProcessed.get());
+        m.put("total", totalCompanies);
+        m.put("success", successCount.get());
+        m.put("fail", failCount.get());
+        m.put("proxies", proxyList.size());
+        m.put("availableProxies", availableProxies.get().size());
+        m.put("googleBreakerOpen", googleBreaker.isOpen());
+        m.put("scheduler", scheduler.status());
+        m.put("queryCost", planner.summary());
+        m.put("settings", settings());
+        return m;
+    }
+
+    static void pause() {
+        scheduler.setPaused(true);
+        log("[管理] ⏸ 暂停派发新任务");
+    }
+
+    static void resume() {
+        scheduler.setPaused(false);
+        log("[管理] ▶ 恢复派发");
+    }
+
+    static void drain() {
+        scheduler.drain();
+        log("[管理] ⏹ 排空：等待在途任务完成后结束");
+    }
+
+    /** 重新调用代理API补充代理（已有的不重复添加） */
+    static void refillProxies() {
+        fetchAllProxies();
+    }
+
+    // ============ 增量刷新 ============
+
+    /**
+     * 刷新模式：跳过谷歌搜索，直接用库里已知的官网重新提取邮箱。
+     * 只处理超过 REFRESH_TTL_MS 的结果，带 If-None-Match/If-Modified-Since，未变化的页面不再解析
+     */
+    private static void runRefresh() throws Exception {
+        System.out.println("========================================");
+        System.out.println("  谷歌搜索爬虫 - 增量刷新");
+        System.out.println("  并发数: " + concurrency + " | 有效期: " + REFRESH_TTL_MS / 86400000 + " 天");
+        System.out.println("========================================\n");
 
-            for (String company : companies) {
+        SqliteResultStore store = openResultStore();
+        resultSink = store;
+        Runtime.getRuntime().addShutdownHook(new Thread(resultSink::flush));
+        fetchAllProxies();       // 没有代理时直连
+
+        List<CompanyInfo> stale = store.findStale(System.currentTimeMillis() - REFRESH_TTL_MS);
+        totalCompanies = stale.size();
+        System.out.println("待刷新公司数: " + totalCompanies);
+        startProgressMonitor();
+
+        AtomicInteger unchanged = new AtomicInteger(0);
+        long startTime = System.currentTimeMillis();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Semaphore semaphore = new Semaphore(concurrency);
+            for (CompanyInfo info : stale) {
                 semaphore.acquire();
                 executor.submit(() -> {
                     try {
-                        processCompany(company);
+                        PageState state = extractEmails(info.website, info);
+                        switch (state) {
+                            case UNCHANGED -> {
+                                unchanged.incrementAndGet();
+                                store.save(info);        // 只更新时间戳
+                            }
+                            case CHANGED -> {
+                                successCount.incrementAndGet();
+                                store.save(info);
+                            }
+                            case FAILED -> failCount.incrementAndGet();  // 保持过期，下次刷新再试
+                        }
+                        totalProcessed.incrementAndGet();
+                        randomDelay();
                     } finally {
                         semaphore.release();
                     }
                 });
             }
-            
-            // 等待所有任务完成
-            semaphore.acquire(CONCURRENCY);
         }
 
+        store.flush();
+        store.exportCsv(OUTPUT_CSV);
+        loadCompanies();         // 只为取得行号
         updateSourceExcel();
+        store.close();
 
         long elapsed = (System.currentTimeMillis() - startTime) / 1000;
         System.out.println("\n========================================");
-        System.out.println("  爬取完成！总耗时: " + elapsed + " 秒");
-        System.out.println("  成功: " + successCount.get() + " | 失败: " + failCount.get());
+        System.out.println("  刷新完成！总耗时: " + elapsed + " 秒");
+        System.out.println("  已更新: " + successCount.get() + " | 未变化: " + unchanged.get() + " | 失败: " + failCount.get());
         System.out.println("========================================");
     }
 
+    // ============ 离线重新提取 ============
+
+    /**
+     * 重新提取模式：不发任何请求，用归档里的搜索页和官网页重跑解析、匹配、邮箱提取。
+     * 每个公司取最新的搜索页，多核并行；结果写到 REEXTRACT_CSV，与上次结果的差异写到 REEXTRACT_DIFF
+     */
+    private static void runReextract() throws Exception {
+        System.out.println("========================================");
+        System.out.println("  谷歌搜索爬虫 - 离线重新提取");
+        System.out.println("========================================\n");
+
+        PageArchive archive = PageArchive.shared();
+        Map<String, List<PageArchive.Entry>> searchPages = new HashMap<>();
+        Map<String, PageArchive.Entry> sitePages = new HashMap<>();
+        for (PageArchive.Entry e : archive.readIndex()) {
+            if (e.type().equals(PageArchive.TYPE_GOOGLE)) {
+                // 只保留最近一轮的搜索页（多种查询写法、含重试），按写入顺序
+                List<PageArchive.Entry> pages = searchPages.computeIfAbsent(e.company(), k -> new ArrayList<>());
+                if (!pages.isEmpty() && (e.attempt().isEmpty() || !e.attempt().equals(pages.get(0).attempt()))) {
+                    pages.clear();
+                }
+                pages.add(e);
+            } else if (e.type().equals(PageArchive.TYPE_SITE)) {
+                sitePages.put(e.company() + "\t" + e.url(), e);  // 按写入顺序覆盖，保留最新的一条
+            }
+        }
+        log("归档: 公司 " + searchPages.size() + " 个, 官网页 " + sitePages.size() + " 个");
+
+        Map<String, CompanyInfo> previous = loadPreviousResults();
+        long startTime = System.currentTimeMillis();
+        List<CompanyInfo> fresh;
+        try (FileChannel ch = archive.openReader()) {
+            fresh = searchPages.entrySet().parallelStream()
+                .map(e -> reextract(archive, ch, e.getKey(), e.getValue(), sitePages, previous.get(e.getKey())))
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparing(i -> i.companyName))
+                .toList();
+        }
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        int changed = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(REEXTRACT_CSV), StandardCharsets.UTF_8);
+             BufferedWriter diff = Files.newBufferedWriter(Paths.get(REEXTRACT_DIFF), StandardCharsets.UTF_8)) {
+            out.write(CsvResultSink.HEADER);
+            diff.write("\uFEFF公司名称,变化,原官网,新官网,原邮箱,新邮箱\n");
+            for (CompanyInfo info : fresh) {
+                String emails = String.join("; ", new TreeSet<>(info.emails));
+                out.write(CsvResultSink.toLine(info.companyName, emails, info.legalPerson, info.website));
+
+                CompanyInfo old = previous.get(info.companyName);
+                String oldSite = old != null && isFound(old.website) ? old.website : "";
+                String newSite = isFound(info.website) ? info.website : "";
+                String oldEmails = old != null ? String.join("; ", new TreeSet<>(old.emails)) : "";
+                String kind = old == null ? "新增"
+                    : !oldSite.equals(newSite) ? "官网变化"
+                    : !oldEmails.equals(emails) ? "邮箱变化" : null;
+                if (kind != null) {
+                    changed++;
+                    diff.write(String.format("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"\n",
+                        CsvResultSink.esc(info.companyName), kind, CsvResultSink.esc(oldSite),
+                        CsvResultSink.esc(newSite), CsvResultSink.esc(oldEmails), CsvResultSink.esc(emails)));
+                }
+            }
+        }
+
+        System.out.println("\n========================================");
+        System.out.println("  重新提取完成！耗时: " + elapsed + " ms");
+        System.out.println("  公司: " + fresh.size() + " | 有变化: " + changed);
+        System.out.println("  结果: " + REEXTRACT_CSV + " | 差异: " + REEXTRACT_DIFF);
+        System.out.println("========================================");
+    }
+
+    /**
+     * 按在线时的顺序重放一轮的各个搜索页，第一个匹配的结果生效
+     */
+    private static CompanyInfo reextract(PageArchive archive, FileChannel ch, String company,
+                                         List<PageArchive.Entry> searchPages,
+                                         Map<String, PageArchive.Entry> sitePages, CompanyInfo previous) {
+        try {
+            CompanyInfo info = new CompanyInfo();
+            info.companyName = company;
+            info.legalPerson = previous != null ? previous.legalPerson : "";
+
+            SearchResult match = null;
+            for (PageArchive.Entry page : searchPages) {
+                List<SearchResult> results = parseSearchResults(Jsoup.parse(archive.read(ch, page)), false);
+                match = findExactMatch(results, company);
+                if (match != null) break;
+            }
+            if (match == null) {
+                info.website = "未找到匹配";
+                return info;
+            }
+            info.website = match.url;
+            PageArchive.Entry site = sitePages.get(company + "\t" + match.url);
+            if (site != null) {
+                info.emails.addAll(findEmails(Jsoup.parse(archive.read(ch, site)).text()));
+            } else {
+                log("[" + company + "] 新匹配的官网未归档: " + match.url);
+            }
+            return info;
+        } catch (Exception e) {
+            log("[" + company + "] ✗ 归档读取失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 上一次的结果：优先读结果库，否则读 results.csv
+     */
+    private static Map<String, CompanyInfo> loadPreviousResults() {
+        Map<String, CompanyInfo> map = new HashMap<>();
+        if (useResultDb) {
+            try (SqliteResultStore store = openResultStore()) {
+                store.forEachResult(info -> map.put(info.companyName, info));
+                return map;
+            } catch (Exception e) {
+                log("❌ 打开结果库失败，改读CSV: " + e.getMessage());
+            }
+        }
+        try {
+            map.putAll(CsvResultSink.readAll(Paths.get(OUTPUT_CSV)));
+        } catch (Exception e) {
+            log("读取 " + OUTPUT_CSV + " 失败: " + e.getMessage());
+        }
+        return map;
+    }
+
     // ============ 代理池管理 ============
 
     /**
@@ -124,7 +488,7 @@ public class GoogleSearchCrawler {
     private static void fetchAllProxies() {
         log("正在从Cliproxy获取代理...");
         try {
-            Document doc = Jsoup.connect(PROXY_API_URL)
+            Document doc = Jsoup.connect(proxyApiUrl)
                     .ignoreContentType(true)
                     .timeout(30000)
                     .get();
@@ -140,9 +504,8 @@ public class GoogleSearchCrawler {
                     String arr = response.substring(start + 1, end);
                     for (String item : arr.split(",")) {
                         String proxy = item.replaceAll("[\"\\s]", "").trim();
-                        if (proxy.contains(":")) {
-                            proxyList.add(proxy);
-                            proxyUsageCount.put(proxy, new AtomicInteger(0));
+                        if (proxy.contains(":") && proxyList.addIfAbsent(proxy)) {
+                            proxyUsageCount.putIfAbsent(proxy, new AtomicInteger(0));
                             log("✅ 代理: " + proxy);
                         }
                     }
@@ -151,9 +514,9 @@ public class GoogleSearchCrawler {
                 // 纯文本格式：IP:端口:用户名:密码（空格或换行分隔）
                 for (String line : response.split("[\\s\\n\\r,]+")) {
                     String proxy = line.trim();
-                    if (proxy.contains(":") && !proxy.contains("{") && proxy.split(":").length >= 2) {
-                        proxyList.add(proxy);
-                        proxyUsageCount.put(proxy, new AtomicInteger(0));
+                    if (proxy.contains(":") && !proxy.contains("{") && proxy.split(":").length >= 2
+                            && proxyList.addIfAbsent(proxy)) {
+                        proxyUsageCount.putIfAbsent(proxy, new AtomicInteger(0));
                         // 只显示IP:端口，隐藏用户名密码
                         String[] parts = proxy.split(":");
                         log("✅ 代理: " + parts[0] + ":" + parts[1] + (parts.length >= 4 ? " (带认证)" : ""));
@@ -161,6 +524,7 @@ public class GoogleSearchCrawler {
                 }
             }
             
+            refreshAvailableProxies();
             log("✅ 共获取 " + proxyList.size() + " 个代理");
         } catch (Exception e) {
             log("❌ 获取代理失败: " + e.getMessage());
@@ -174,18 +538,14 @@ public class GoogleSearchCrawler {
     private static String getProxy() {
         if (proxyList.isEmpty()) return null;
         
-        // 过滤掉失败的代理
-        List<String> available = proxyList.stream()
-            .filter(p -> !failedProxies.contains(p))
-            .toList();
-        
+        List<String> available = availableProxies.get();
         if (available.isEmpty()) {
             log("⚠️ 所有代理都已失效！");
             return null;
         }
         
         // 轮换选择
-        int idx = proxyIndex.getAndIncrement() % available.size();
+        int idx = Math.floorMod(proxyIndex.getAndIncrement(), available.size());
         String proxy = available.get(idx);
         proxyUsageCount.get(proxy).incrementAndGet();
         return proxy;
@@ -197,10 +557,20 @@ public class GoogleSearchCrawler {
     private static void markProxyFailed(String proxy) {
         if (proxy != null) {
             failedProxies.add(proxy);
+            refreshAvailableProxies();
             log("❌ 代理失效: " + proxy + " (剩余: " + (proxyList.size() - failedProxies.size()) + ")");
         }
     }
 
+    /**
+     * 重建可用代理快照；CAS 失败时会重新计算，最终快照一定包含最新的失效标记
+     */
+    private static void refreshAvailableProxies() {
+        availableProxies.updateAndGet(prev -> proxyList.stream()
+            .filter(p -> !failedProxies.contains(p))
+            .toList());
+    }
+
     /**
      * 等待代理池就绪
      */
@@ -214,44 +584,110 @@ public class GoogleSearchCrawler {
 
     // ============ 爬虫逻辑 ============
 
-    private static void processCompany(String company) {
-        if (company == null || company.isBlank() || completedCompanies.contains(company)) return;
+    private static void processCompany(CrawlScheduler.WorkItem item) {
+        String company = item.company;
+        if (company == null || company.isBlank() || completedCompanies.contains(company)) {
+            scheduler.complete(item, null);
+            return;
+        }
 
-        log("处理: " + company);
+        log("处理: " + company + (item.attempt > 1 ? " (第" + item.attempt + "次, 上次: " + item.lastFailure + ")" : ""));
 
         CompanyInfo info = new CompanyInfo();
         info.companyName = company;
         info.legalPerson = companyLegalMap.getOrDefault(company, "");
+        CrawlScheduler.Failure failure = null;
 
         try {
-            List<SearchResult> results = searchGoogle(company);
-            log("[" + company + "] 搜索到 " + results.size() + " 条结果");
-            
-            // 打印前3条结果用于调试
-            for (int i = 0; i < Math.min(3, results.size()); i++) {
-                log("[" + company + "] 结果" + (i+1) + ": " + results.get(i).title);
+            // 按规划依次尝试查询写法，命中即停；无结果换下一种，被封/网络错误交给调度器重试，
+            // 重试时跳过已有结论的写法，一家公司的查询总数不超过 MAX_QUERY_VARIANTS（不含被封/网络失败的请求）
+            QueryProgress progress = queryProgress.computeIfAbsent(company, k -> new QueryProgress());
+            Set<QueryPlanner.Variant> tried = progress.tried;
+            List<QueryPlanner.Variant> plan = planner.plan(company, info.legalPerson, tried);
+            if (plan.isEmpty() && !progress.sawResults) {
+                // 上几次各写法都无结果（多为软封锁）：写法用完后重新来一轮
+                tried.clear();
+                plan = planner.plan(company, info.legalPerson, tried);
+            }
+            List<SearchResult> results = null;
+            SearchResult match = null;
+            int searched = 0;
+            for (QueryPlanner.Variant v : plan) {
+                if (searched++ > 0) randomDelay();  // 换写法也是一次搜索请求，同样要间隔
+                try {
+                    results = searchGoogle(company, v, progress.archiveTag);
+                } catch (SearchFailure e) {
+                    // 疑似软封锁的空结果页不算该写法的结论，不计入命中统计，交给调度器稍后重试
+                    if (e.reason != CrawlScheduler.Failure.NO_RESULTS || e.suspectedBlock) throw e;
+                    tried.add(v);
+                    planner.recordOutcome(company, v, false);
+                    log("[" + company + "] " + v + " 无结果，换下一种查询");
+                    continue;
+                }
+                tried.add(v);
+                progress.sawResults = true;
+                log("[" + company + "] " + v + " 搜索到 " + results.size() + " 条结果");
+                
+                // 打印前3条结果用于调试
+                for (int i = 0; i < Math.min(3, results.size()); i++) {
+                    log("[" + company + "] 结果" + (i+1) + ": " + results.get(i).title);
+                }
+                
+                match = findExactMatch(results, company);
+                planner.recordOutcome(company, v, match != null);
+                if (match != null) break;
+            }
+
+            if (match == null && !progress.sawResults) {
+                // 各写法都没有结果：按 NO_RESULTS 交给调度器重试，不记为未找到
+                throw new SearchFailure(CrawlScheduler.Failure.NO_RESULTS, "所有查询写法均无结果");
             }
-            
-            SearchResult match = findExactMatch(results, company);
 
             if (match != null) {
                 log("[" + company + "] ✓ 匹配: " + match.url);
                 info.website = match.url;
                 extractEmails(match.url, info);
-                successCount.incrementAndGet();
             } else {
                 log("[" + company + "] ✗ 未匹配");
                 log("[" + company + "] 公司名标准化: [" + normalize(company) + "]");
                 // 打印所有结果的标准化标题用于调试
-                for (int i = 0; i < Math.min(5, results.size()); i++) {
+                for (int i = 0; results != null && i < Math.min(5, results.size()); i++) {
                     log("[" + company + "] 结果" + (i+1) + "标准化: [" + normalize(results.get(i).title) + "]");
                 }
                 info.website = "未找到匹配";
-                failCount.incrementAndGet();
+                failure = CrawlScheduler.Failure.NO_MATCH;
             }
+        } catch (SearchFailure e) {
+            log("[" + company + "] ✗ " + e.reason + ": " + e.getMessage());
+            info.website = "未找到匹配";
+            failure = e.reason;
         } catch (Exception e) {
             log("[" + company + "] ✗ 异常: " + e.getMessage());
-            failCount.incrementAndGet();
+            info.website = "未找到匹配";
+            failure = CrawlScheduler.Failure.ERROR;
+        }
+
+        // 临时性失败交给调度器延迟重试，不占用当前工作线程
+        CrawlScheduler.Disposition disposition = scheduler.complete(item, failure);
+        if (disposition != CrawlScheduler.Disposition.RETRY) queryProgress.remove(company);
+        switch (disposition) {
+            case RETRY -> {
+                log("[" + company + "] ↻ 稍后重试 (" + failure + ")");
+                randomDelay();
+                return;
+            }
+            case GAVE_UP -> {
+                log("[" + company + "] ✗ 重试 " + item.attempt + " 次仍失败，不记入进度，下次运行再试");
+                saveFailed(company, failure);
+                failCount.incrementAndGet();
+                totalProcessed.incrementAndGet();
+                randomDelay();
+                return;
+            }
+            case DONE -> {
+                if (failure == null) successCount.incrementAndGet();
+                else failCount.incrementAndGet();
+            }
         }
 
         // 保存前打印完整数据
@@ -260,85 +696,97 @@ public class GoogleSearchCrawler {
         log("法人: " + info.legalPerson);
         log("官网: " + info.website);
         log("邮箱: " + (info.emails.isEmpty() ? "无" : String.join("; ", info.emails)));
-        log("备注: " + (info.website != null && !info.website.equals("未找到匹配") ? "已找到" : "未找到官网"));
+        log("备注: " + (isFound(info.website) ? "已找到" : "未找到官网"));
         log("==============================");
         
-        resultList.add(info);
-        saveResultToCsv(info);
-        saveProgress(company);
+        saveResult(info);  // 进度在结果落盘后由 resultSink 回调写入
         totalProcessed.incrementAndGet();
         randomDelay();
     }
 
-    private static List<SearchResult> searchGoogle(String companyName) {
-        List<SearchResult> results = new ArrayList<>();
-        String lastProxy = null;
-        
-        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
-            try {
-                String url = "https://" + GOOGLE_DOMAIN + "/search?q=" + 
-                    URLEncoder.encode(companyName, StandardCharsets.UTF_8) + 
-                    "&num=20&hl=zh-TW&gl=TW&gws_rd=cr";
-
-                log("[搜索] 第" + attempt + "次尝试: " + url);
-                String proxy = getProxy();
-                lastProxy = proxy;
-                String[] proxyParts = proxy != null ? proxy.split(":") : null;
-                log("[搜索] 使用代理: " + (proxyParts != null ? proxyParts[0] + ":" + proxyParts[1] : "无代理"));
-                
-                String html = fetchWithProxy(url, proxy);
-                if (html == null) {
-                    log("[搜索] 请求失败，重试...");
-                    randomDelay();
-                    continue;
-                }
-                
-                Document doc = Jsoup.parse(html);
-                String text = doc.text();
-                
-                log("[搜索] 响应长度: " + text.length() + " 字符");
-                log("[搜索] 响应前200字: " + text.substring(0, Math.min(200, text.length())));
-                
-                if (text.contains("unusual traffic") || text.contains("captcha")) {
-                    log("[" + companyName + "] ⚠️ 验证码，标记代理失效");
-                    markProxyFailed(proxy);
-                    randomDelay();
-                    continue;
-                }
+    /**
+     * 单次搜索；失败时抛出 SearchFailure，由调度器决定是否重试
+     */
+    private static List<SearchResult> searchGoogle(String companyName, QueryPlanner.Variant variant,
+                                                   String archiveTag) throws SearchFailure {
+        String query = variant.query(companyName, companyLegalMap.getOrDefault(companyName, ""));
+        String url = searchBaseUrl + "/search?q=" + 
+            URLEncoder.encode(query, StandardCharsets.UTF_8) + 
+            "&num=" + variant.num + "&hl=zh-TW&gl=TW&gws_rd=cr";
 
-                // 打印HTML结构用于调试
-                var searchResults = doc.select("div.g, div.Gx5Zad");
-                log("[搜索] 找到 div.g/Gx5Zad 元素: " + searchResults.size() + " 个");
-                
-                searchResults.forEach(el -> {
-                    var link = el.selectFirst("a[href^=http]");
-                    var title = el.selectFirst("h3");
-                    if (link != null) {
-                        String href = link.attr("href");
-                        String titleText = title != null ? title.text() : "(无标题)";
-                        log("[搜索] 发现链接: " + titleText + " -> " + href);
-                        if (isValidUrl(href)) {
-                            results.add(new SearchResult(titleText, href));
-                        } else {
-                            log("[搜索] 跳过无效URL: " + href);
-                        }
-                    }
-                });
+        log("[搜索] 请求: " + url);
+        String proxy = getProxy();
+        String[] proxyParts = proxy != null ? proxy.split(":") : null;
+        log("[搜索] 使用代理: " + (proxyParts != null ? proxyParts[0] + ":" + proxyParts[1] : "无代理"));
 
-                log("[搜索] 有效结果数: " + results.size());
-                if (!results.isEmpty()) return results;
-                
-                // 如果没找到结果，打印整个HTML用于调试
-                log("[搜索] ⚠️ 未找到结果，打印HTML片段:");
-                log(html.substring(0, Math.min(2000, html.length())));
-                
-            } catch (Exception e) {
-                log("[搜索] 第" + attempt + "次异常: " + e.getClass().getSimpleName() + " - " + e.getMessage());
-                if (attempt == MAX_RETRIES) break;
+        try {
+            googleBreaker.awaitPermission();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SearchFailure(CrawlScheduler.Failure.NETWORK, "等待熔断恢复时被中断");
+        }
+
+        FetchResult res = fetchPage(url, proxy, true);
+        planner.recordRequest(companyName, variant, res != null ? res.bytes : -1);
+        if (res == null) {
+            googleBreaker.recordIgnored();
+            throw new SearchFailure(CrawlScheduler.Failure.NETWORK, "请求失败");
+        }
+        if (res.blocked) {
+            googleBreaker.recordBlocked();
+            markProxyFailed(proxy);
+            throw new SearchFailure(CrawlScheduler.Failure.BLOCKED, res.reason + "，标记代理失效");
+        }
+        if (res.status >= 500) {
+            googleBreaker.recordIgnored();
+            throw new SearchFailure(CrawlScheduler.Failure.NETWORK, "HTTP " + res.status);
+        }
+        googleBreaker.recordSuccess();
+
+        String html = res.html;
+        if (ARCHIVE_PAGES) PageArchive.shared().append(PageArchive.TYPE_GOOGLE, companyName, url, html, archiveTag);
+        Document doc = Jsoup.parse(html);
+        String text = doc.text();
+        
+        log("[搜索] 响应长度: " + text.length() + " 字符");
+        log("[搜索] 响应前200字: " + text.substring(0, Math.min(200, text.length())));
+
+        List<SearchResult> results = parseSearchResults(doc, true);
+        log("[搜索] 有效结果数: " + results.size());
+        if (results.isEmpty()) {
+            // 如果没找到结果，打印整个HTML用于调试
+            log("[搜索] ⚠️ 未找到结果，打印HTML片段:");
+            log(html.substring(0, Math.min(2000, html.length())));
+            for (String marker : NO_RESULT_MARKERS) {
+                if (text.contains(marker)) throw new SearchFailure(CrawlScheduler.Failure.NO_RESULTS, "无搜索结果");
             }
-            randomDelay();
+            throw new SearchFailure(CrawlScheduler.Failure.NO_RESULTS, "结果页无结果条目，疑似软封锁", true);
         }
-        log("[搜索] 所有重试失败，返回空结果");
+        return results;
+    }
+
+    /**
+     * 解析谷歌结果页；verbose 时打印每条链接用于调试
+     */
+    private static List<SearchResult> parseSearchResults(Document doc, boolean verbose) {
+        List<SearchResult> results = new ArrayList<>();
+        var searchResults = doc.select("div.g, div.Gx5Zad");
+        if (verbose) log("[搜索] 找到 div.g/Gx5Zad 元素: " + searchResults.size() + " 个");
+        
+        searchResults.forEach(el -> {
+            var link = el.selectFirst("a[href^=http]");
+            var title = el.selectFirst("h3");
+            if (link != null) {
+                String href = link.attr("href");
+                String titleText = title != null ? title.text() : "(无标题)";
+                if (verbose) log("[搜索] 发现链接: " + titleText + " -> " + href);
+                if (isValidUrl(href)) {
+                    results.add(new SearchResult(titleText, href));
+                } else if (verbose) {
+                    log("[搜索] 跳过无效URL: " + href);
+                }
+            }
+        });
         return results;
     }
 
@@ -376,40 +824,81 @@ public class GoogleSearchCrawler {
                 .trim();
     }
 
-    private static void extractEmails(String url, CompanyInfo info) {
+    /**
+     * 访问官网提取邮箱；info 带有 etag/lastModified 时发条件请求，304 则保留原有邮箱
+     */
+    private static PageState extractEmails(String url, CompanyInfo info) {
         log("[邮箱提取] 开始访问: " + url);
         try {
-            String html = fetchWithProxy(url, getProxy());
-            if (html == null) return;
+            FetchResult res = fetchPage(url, getProxy(), false, info.etag, info.lastModified);
+            planner.recordFollowUp(res != null ? res.bytes : -1);
+            if (res == null) return PageState.FAILED;
+            if (res.status == 304) {
+                log("[邮箱提取] 页面未变化 (304)，跳过解析");
+                return PageState.UNCHANGED;
+            }
+            if (res.html == null || res.status >= 400) {
+                log("[邮箱提取] HTTP " + res.status);
+                return PageState.FAILED;
+            }
+            info.etag = res.etag;
+            info.lastModified = res.lastModified;
+            info.emails.clear();
+            String html = res.html;
+            if (ARCHIVE_PAGES) PageArchive.shared().append(PageArchive.TYPE_SITE, info.companyName, url, html);
             
             Document doc = Jsoup.parse(html);
             String pageText = doc.text();
             log("[邮箱提取] 页面长度: " + pageText.length() + " 字符");
             
-            Matcher m = EMAIL_PATTERN.matcher(pageText);
-            int count = 0;
-            while (m.find()) {
-                String email = m.group();
-                if (!email.endsWith(".png") && !email.endsWith(".jpg")) {
-                    info.emails.add(email);
-                    count++;
-                    log("[邮箱提取] 找到: " + email);
-                }
-            }
-            log("[邮箱提取] 共找到 " + count + " 个邮箱");
+            Set<String> found = findEmails(pageText);
+            found.forEach(email -> log("[邮箱提取] 找到: " + email));
+            info.emails.addAll(found);
+            log("[邮箱提取] 共找到 " + found.size() + " 个邮箱");
+            return PageState.CHANGED;
         } catch (Exception e) {
             log("[邮箱提取] 失败: " + e.getMessage());
+            return PageState.FAILED;
         }
     }
 
+    private static Set<String> findEmails(String pageText) {
+        Set<String> emails = new LinkedHashSet<>();
+        Matcher m = EMAIL_PATTERN.matcher(pageText);
+        while (m.find()) {
+            String email = m.group();
+            if (!email.endsWith(".png") && !email.endsWith(".jpg")) {
+                emails.add(email);
+            }
+        }
+        return emails;
+    }
+
     /**
      * 使用OkHttp发送请求（支持认证代理）
      */
     private static String fetchWithProxy(String url, String proxyStr) {
+        FetchResult res = fetchPage(url, proxyStr, false);
+        return res != null ? res.html : null;
+    }
+
+    /**
+     * 发送请求；detectBlock 为 true 时先根据状态码、跳转地址和响应开头判断验证码/限流，
+     * 命中则直接返回，不读取完整内容
+     */
+    private static FetchResult fetchPage(String url, String proxyStr, boolean detectBlock) {
+        return fetchPage(url, proxyStr, detectBlock, null, null);
+    }
+
+    /**
+     * 同上；etag/lastModified 非空时发送条件请求，未变化时返回 304 且不读取内容
+     */
+    private static FetchResult fetchPage(String url, String proxyStr, boolean detectBlock,
+                                         String etag, String lastModified) {
         try {
             OkHttpClient.Builder builder = new OkHttpClient.Builder()
-                    .connectTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                    .readTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .connectTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                    .readTimeout(timeoutMs, TimeUnit.MILLISECONDS)
                     .followRedirects(true);
 
             if (proxyStr != null) {
@@ -435,15 +924,39 @@ public class GoogleSearchCrawler {
             }
 
             OkHttpClient client = builder.build();
-            Request request = new Request.Builder()
+            Request.Builder rb = new Request.Builder()
                     .url(url)
                     .header("User-Agent", USER_AGENTS[random.nextInt(USER_AGENTS.length)])
-                    .header("Accept-Language", "zh-TW,zh;q=0.9")
-                    .build();
+                    .header("Accept-Language", "zh-TW,zh;q=0.9");
+            if (etag != null && !etag.isEmpty()) rb.header("If-None-Match", etag);
+            if (lastModified != null && !lastModified.isEmpty()) rb.header("If-Modified-Since", lastModified);
+            Request request = rb.build();
 
             try (Response response = client.newCall(request).execute()) {
+                if (detectBlock) {
+                    String reason = detectBlock(response);
+                    if (reason != null) {
+                        FetchResult res = FetchResult.blocked(response.code(), reason);
+                        if (response.body() != null) res.bytes = response.body().contentLength();  // 未知时为 -1
+                        return res;
+                    }
+                }
+                if (response.code() == 304) {
+                    FetchResult res = new FetchResult(304, null, false, null);
+                    res.bytes = 0;
+                    return res;
+                }
                 if (response.body() != null) {
-                    return response.body().string();
+                    // 按实际收到的正文字节计流量，再按响应声明的编码解码
+                    ResponseBody body = response.body();
+                    byte[] raw = body.bytes();
+                    MediaType type = body.contentType();
+                    String html = new String(raw, type != null ? type.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8);
+                    FetchResult res = new FetchResult(response.code(), html, false, null);
+                    res.bytes = raw.length;
+                    res.etag = response.header("ETag");
+                    res.lastModified = response.header("Last-Modified");
+                    return res;
                 }
             }
         } catch (Exception e) {
@@ -452,13 +965,39 @@ public class GoogleSearchCrawler {
         return null;
     }
 
+    /**
+     * 验证码/限流检测，返回原因；未命中返回 null
+     */
+    private static String detectBlock(Response response) throws IOException {
+        int code = response.code();
+        if (code == 429) return "HTTP 429 限流";
+        if (code == 503) return "HTTP 503 限流";
+
+        // 跳转到 /sorry/ 验证页
+        if (response.request().url().encodedPath().startsWith("/sorry/")) return "跳转验证码页";
+        for (Response prior = response.priorResponse(); prior != null; prior = prior.priorResponse()) {
+            String location = prior.header("Location");
+            if (location != null && location.contains("/sorry/")) return "跳转验证码页";
+        }
+
+        // 只看响应开头
+        if (response.body() != null) {
+            String head = response.peekBody(SNIFF_BYTES).string().toLowerCase();
+            for (String marker : BLOCK_MARKERS) {
+                if (head.contains(marker)) return "页面含验证码标记(" + marker + ")";
+            }
+        }
+        return null;
+    }
+
     private static boolean isValidUrl(String url) {
         return url.startsWith("http") && !url.contains("google.com") && 
                !url.contains("youtube.com") && !url.contains("webcache");
     }
 
     private static void randomDelay() {
-        try { Thread.sleep(MIN_DELAY_MS + random.nextInt(MAX_DELAY_MS - MIN_DELAY_MS)); } 
+        int min = minDelayMs, max = maxDelayMs;
+        try { Thread.sleep(min + (max > min ? random.nextInt(max - min) : 0)); } 
         catch (InterruptedException e) { Thread.currentThread().interrupt(); }
     }
 
@@ -477,11 +1016,12 @@ public class GoogleSearchCrawler {
                 if (row.getRowNum() == 0) continue;
                 String name = getCellValue(row.getCell(COMPANY_COLUMN));
                 String legal = getCellValue(row.getCell(LEGAL_COLUMN));
-                if (name != null && !name.isBlank() && !completedCompanies.contains(name.trim())) {
+                if (name != null && !name.isBlank()) {
                     name = name.trim();
+                    companyRowMap.put(name, row.getRowNum());  // 已完成的也记录行号，导出xlsx时使用
+                    if (completedCompanies.contains(name)) continue;
                     companies.add(name);
                     companyLegalMap.put(name, legal != null ? legal.trim() : "");
-                    companyRowMap.put(name, row.getRowNum());
                 }
             }
         }
@@ -502,54 +1042,83 @@ public class GoogleSearchCrawler {
             Path p = Paths.get(PROGRESS_FILE);
             if (Files.exists(p)) {
                 completedCompanies.addAll(Files.readAllLines(p));
-                log("断点续爬: 已完成 " + completedCompanies.size() + " 条");
             }
         } catch (Exception e) { }
+        if (resultSink instanceof SqliteResultStore store) {
+            completedCompanies.addAll(store.completedCompanies());
+        }
+        log("断点续爬: 已完成 " + completedCompanies.size() + " 条");
     }
 
-    private static final Object progressLock = new Object();
+    // 用 ReentrantLock 而不是 synchronized：持锁写文件时虚拟线程不会钉住载体线程
+    private static final ReentrantLock progressLock = new ReentrantLock();
     private static void saveProgress(String company) {
-        synchronized (progressLock) {
-            try {
-                Files.writeString(Paths.get(PROGRESS_FILE), company + "\n",
-                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-                completedCompanies.add(company);
-            } catch (Exception e) { }
+        progressLock.lock();
+        try {
+            Files.writeString(Paths.get(PROGRESS_FILE), company + "\n",
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            completedCompanies.add(company);
+        } catch (Exception e) {
+        } finally {
+            progressLock.unlock();
         }
     }
 
-    private static void initCsvFile() {
+    private static void saveFailed(String company, CrawlScheduler.Failure reason) {
+        progressLock.lock();
         try {
-            Path p = Paths.get(OUTPUT_CSV);
-            if (!Files.exists(p)) {
-                Files.writeString(p, "\uFEFF公司名称,邮箱,法人,官网,备注\n", StandardCharsets.UTF_8);
+            Files.writeString(Paths.get(FAILED_FILE), company + "\t" + reason + "\n",
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (Exception e) {
+        } finally {
+            progressLock.unlock();
+        }
+    }
+
+    /**
+     * 打开结果库；库还是空的而旧 results.csv 存在时（从 CSV 模式切换过来）先导入，
+     * 否则导出 CSV 会把旧结果覆盖掉。导入失败则抛出，调用方退回 CSV
+     */
+    static SqliteResultStore openResultStore() throws Exception {
+        SqliteResultStore store = new SqliteResultStore(RESULT_DB);
+        Path csv = Paths.get(OUTPUT_CSV);
+        if (store.isEmpty() && Files.exists(csv)) {
+            try {
+                store.importResults(CsvResultSink.readAll(csv).values(), Files.getLastModifiedTime(csv).toMillis());
+            } catch (Exception e) {
+                store.close();
+                throw e;
             }
-        } catch (Exception e) { }
+        }
+        return store;
     }
 
-    private static final Object csvLock = new Object();
-    private static void saveResultToCsv(CompanyInfo info) {
-        synchronized (csvLock) {
+    /**
+     * 打开结果输出：默认写入本地结果库，失败时退回CSV追加
+     */
+    static void openResultSink() {
+        if (useResultDb) {
             try {
-                String remark = info.website != null && !info.website.equals("未找到匹配") ? "已找到" : "未找到官网";
-                String emails = String.join("; ", info.emails);
-                String line = String.format("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"\n",
-                    esc(info.companyName), esc(emails),
-                    esc(info.legalPerson), esc(info.website), remark);
-                
-                log("[CSV保存] 写入: " + info.companyName + " | 邮箱: " + (emails.isEmpty() ? "无" : emails) + " | 官网: " + info.website);
-                
-                Files.writeString(Paths.get(OUTPUT_CSV), line, StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-                log("[CSV保存] ✓ 成功");
+                resultSink = openResultStore();
+                log("结果库: " + RESULT_DB);
             } catch (Exception e) {
-                log("[CSV保存] ✗ 失败: " + e.getMessage());
+                log("❌ 打开结果库失败，改用CSV: " + e.getMessage());
             }
         }
+        if (resultSink == null) resultSink = new CsvResultSink(OUTPUT_CSV);
+        // 结果落盘后才记进度，缓冲中的结果丢失时下次会重新爬取
+        resultSink.setOnPersisted(info -> saveProgress(info.companyName));
+        // 异常退出时把缓冲中的结果写掉
+        Runtime.getRuntime().addShutdownHook(new Thread(resultSink::flush));
     }
 
-    private static String esc(String s) {
-        return s == null ? "" : s.replace("\"", "\"\"").replace("\n", " ");
+    private static void saveResult(CompanyInfo info) {
+        if (!(resultSink instanceof SqliteResultStore)) resultList.add(info);
+        resultSink.save(info);
+    }
+
+    static boolean isFound(String website) {
+        return website != null && !website.equals("未找到匹配");
     }
 
     private static void updateSourceExcel() {
@@ -561,16 +1130,21 @@ public class GoogleSearchCrawler {
             if (header.getCell(WEBSITE_COLUMN) == null) header.createCell(WEBSITE_COLUMN).setCellValue("官网");
             if (header.getCell(REMARK_COLUMN) == null) header.createCell(REMARK_COLUMN).setCellValue("备注");
 
-            for (CompanyInfo info : resultList) {
+            java.util.function.Consumer<CompanyInfo> apply = info -> {
                 Integer rowNum = companyRowMap.get(info.companyName);
-                if (rowNum == null) continue;
+                if (rowNum == null) return;
                 Row row = sheet.getRow(rowNum);
-                if (row == null) continue;
+                if (row == null) return;
                 
-                boolean found = info.website != null && !info.website.equals("未找到匹配");
+                boolean found = isFound(info.website);
                 getCell(row, EMAIL_COLUMN).setCellValue(String.join("; ", info.emails));
                 getCell(row, WEBSITE_COLUMN).setCellValue(found ? info.website : "");
                 getCell(row, REMARK_COLUMN).setCellValue(found ? "已找到" : "未找到官网");
+            };
+            if (resultSink instanceof SqliteResultStore store) {
+                store.forEachResult(apply);
+            } else {
+                resultList.forEach(apply);
             }
 
             try (FileOutputStream fos = new FileOutputStream(INPUT_FILE)) {
@@ -594,21 +1168,70 @@ public class GoogleSearchCrawler {
                     Thread.sleep(10000);
                     int p = totalProcessed.get();
                     int availableProxies = proxyList.size() - failedProxies.size();
-                    System.out.printf("[进度] %d/%d (%.1f%%) | 成功: %d | 失败: %d | 可用代理: %d/%d%n",
+                    System.out.printf("[进度] %d/%d (%.1f%%) | 成功: %d | 失败: %d | 待重试: %d | 可用代理: %d/%d%n",
                         p, totalCompanies, p * 100.0 / totalCompanies, 
-                        successCount.get(), failCount.get(), availableProxies, proxyList.size());
+                        successCount.get(), failCount.get(), scheduler.pendingRetries(),
+                        availableProxies, proxyList.size());
                 } catch (InterruptedException e) { break; }
             }
         });
     }
 
+    /** 一家公司的查询进度：已有结论（无结果/未匹配）的写法，重试时跳过 */
+    static class QueryProgress {
+        final Set<QueryPlanner.Variant> tried = EnumSet.noneOf(QueryPlanner.Variant.class);
+        boolean sawResults = false;   // 有写法搜到过结果（之后未匹配才算最终未找到）
+        // 归档标记：本轮各写法的搜索页（含重试）共用，离线重新提取按它取最近一轮
+        final String archiveTag = Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    static class SearchFailure extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final CrawlScheduler.Failure reason;
+        final boolean suspectedBlock;   // NO_RESULTS 时：页面不像真正的"无结果"，疑似软封锁
+
+        SearchFailure(CrawlScheduler.Failure reason, String message) {
+            this(reason, message, false);
+        }
+
+        SearchFailure(CrawlScheduler.Failure reason, String message, boolean suspectedBlock) {
+            super(message);
+            this.reason = reason;
+            this.suspectedBlock = suspectedBlock;
+        }
+    }
+
+    static class FetchResult {
+        final int status;
+        final String html;
+        final boolean blocked;
+        final String reason;
+        String etag, lastModified;
+        long bytes = -1;            // 正文字节数，未知为 -1
+
+        FetchResult(int status, String html, boolean blocked, String reason) {
+            this.status = status;
+            this.html = html;
+            this.blocked = blocked;
+            this.reason = reason;
+        }
+
+        static FetchResult blocked(int status, String reason) {
+            return new FetchResult(status, null, true, reason);
+        }
+    }
+
     static class SearchResult {
         String title, url;
         SearchResult(String t, String u) { title = t; url = u; }
     }
 
+    enum PageState { CHANGED, UNCHANGED, FAILED }
+
     static class CompanyInfo {
         String companyName, legalPerson, website;
+        String etag, lastModified;               // 官网的缓存校验头，刷新时发条件请求
         Set<String> emails = new HashSet<>();
     }
 }
@@ -0,0 +1,160 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 原始页面归档（类似 WARC.gz）
+ *
+ * 数据文件：每条记录单独 gzip 压缩后追加写入，记录内是头部 + 空行 + 页面内容
+ * 索引文件：每行一条，offset\tlength\ttype\tcompany\turl\tdate\tattempt，可按偏移随机读取
+ *           attempt 标识属于同一轮的多个页面（如一家公司多种查询写法的搜索页），旧记录没有这一列
+ *
+ * 记录在锁外压缩，锁内只做追加；读取用 FileChannel 按位置读，可多线程并行
+ */
+public class PageArchive {
+
+    static final String TYPE_GOOGLE = "google";    // 谷歌搜索结果页
+    static final String TYPE_BING = "bing";        // Bing 搜索结果页
+    static final String TYPE_SITE = "site";        // 公司官网
+
+    private static final String DATA_FILE = "pages.arc.gz";
+    private static final String INDEX_FILE = "pages.arc.idx";
+
+    private final Path dataPath;
+    private final Path indexPath;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /** 索引条目；attempt 为空表示未标记 */
+    public record Entry(long offset, int length, String type, String company, String url, String date,
+                        String attempt) {}
+
+    public PageArchive(Path dataPath, Path indexPath) {
+        this.dataPath = dataPath;
+        this.indexPath = indexPath;
+    }
+
+    private static class Holder {
+        static final PageArchive SHARED = new PageArchive(Paths.get(DATA_FILE), Paths.get(INDEX_FILE));
+    }
+
+    /** 当前目录下的默认归档（同一进程内共用一个写锁） */
+    public static PageArchive shared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * 追加一条记录；失败只记日志，不影响爬取
+     */
+    public void append(String type, String company, String url, String html) {
+        append(type, company, url, html, "");
+    }
+
+    /** 追加一条记录，attempt 标记所属的一轮 */
+    public void append(String type, String company, String url, String html, String attempt) {
+        if (html == null) return;
+        String date = Instant.now().toString();
+        byte[] record;
+        try {
+            record = compress(type, company, url, date, attempt, html);
+        } catch (IOException e) {
+            log("[归档] ✗ 压缩失败: " + e.getMessage());
+            return;
+        }
+
+        writeLock.lock();
+        try (FileChannel ch = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = ch.size();
+            ByteBuffer buf = ByteBuffer.wrap(record);
+            while (buf.hasRemaining()) ch.write(buf, offset + buf.position());
+            String line = offset + "\t" + record.length + "\t" + type + "\t" + clean(company) + "\t" + clean(url)
+                + "\t" + date + "\t" + clean(attempt) + "\n";
+            Files.writeString(indexPath, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log("[归档] ✗ 写入失败: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** 读取全部索引（按写入顺序） */
+    public List<Entry> readIndex() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(indexPath)) return entries;
+        try (BufferedReader r = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                if (f.length < 6) continue;  // 写到一半的行
+                entries.add(new Entry(Long.parseLong(f[0]), Integer.parseInt(f[1]), f[2], f[3], f[4], f[5],
+                        f.length > 6 ? f[6] : ""));
+            }
+        }
+        return entries;
+    }
+
+    /** 打开只读通道，可在多个线程间共用（按位置读不改变通道位置） */
+    public FileChannel openReader() throws IOException {
+        return FileChannel.open(dataPath, StandardOpenOption.READ);
+    }
+
+    /** 读取一条记录的页面内容 */
+    public String read(Entry e) throws IOException {
+        try (FileChannel ch = openReader()) {
+            return read(ch, e);
+        }
+    }
+
+    /** 用已打开的通道读取一条记录，可并发调用 */
+    public String read(FileChannel ch, Entry e) throws IOException {
+        byte[] raw = new byte[e.length()];
+        ByteBuffer buf = ByteBuffer.wrap(raw);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, e.offset() + buf.position()) < 0) throw new EOFException("记录不完整: " + e.offset());
+        }
+        byte[] data;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(raw))) {
+            data = in.readAllBytes();
+        }
+        // 跳过头部，找到第一个空行
+        for (int i = 0; i + 3 < data.length; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n' && data[i + 2] == '\r' && data[i + 3] == '\n') {
+                return new String(data, i + 4, data.length - i - 4, StandardCharsets.UTF_8);
+            }
+        }
+        throw new IOException("记录格式错误: " + e.offset());
+    }
+
+    private static byte[] compress(String type, String company, String url, String date, String attempt,
+                                   String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        String header = "ARCHIVE/1.0\r\n" +
+                "Type: " + type + "\r\n" +
+                "Company: " + clean(company) + "\r\n" +
+                "URL: " + clean(url) + "\r\n" +
+                "Date: " + date + "\r\n" +
+                (attempt.isEmpty() ? "" : "Attempt: " + clean(attempt) + "\r\n") +
+                "Content-Length: " + body.length + "\r\n\r\n";
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(body.length / 4 + 256);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+            gz.write(header.getBytes(StandardCharsets.UTF_8));
+            gz.write(body);
+        }
+        return bos.toByteArray();
+    }
+
+    private static String clean(String s) {
+        return s == null ? "" : s.replaceAll("[\\t\\r\\n]", " ");
+    }
+
+    private static void log(String msg) {
+        System.out.println("[" + java.time.LocalTime.now().toString().substring(0, 8) + "] " + msg);
+    }
+}
@@ -0,0 +1,201 @@
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 搜索查询规划 - 按公司名"形状"学习各查询变体的命中率和流量，先用最便宜、最可能命中的变体
+ *
+ * 形状：后缀（股份有限公司/有限公司/其他）+ 去后缀后的长度档 + 是否含英文字母
+ * 得分：命中率 / 单次成本，成本 = 1 次请求 + 平均流量折算的请求数（只按大小已知的响应平均）
+ * 命中率用变体整体命中率做先验平滑，样本少的形状不会被偶然结果带偏
+ * 统计存到文件，下次运行继续使用
+ */
+public class QueryPlanner {
+
+    private static final String SUFFIX_REGEX = "股份有限公司|有限公司|公司";
+    private static final double BYTES_PER_REQUEST = 512 * 1024;   // 约 512KB 流量折算 1 次请求
+    private static final double DEFAULT_BYTES_PER_RESULT = 20 * 1024; // 没有流量数据时按每条结果约 20KB 估算
+    private static final double PRIOR_WEIGHT = 2;                 // 先验相当于几次观测
+    private static final double EXPLORE_RATE = 0.05;              // 小概率交换前两个变体，持续探索
+
+    /** 查询变体 */
+    enum Variant {
+        FULL(20),          // 原样全名（旧行为）
+        FULL_SMALL(10),    // 全名，结果数减半
+        SHORT(10),         // 去掉公司后缀的简称
+        WITH_LEGAL(10);    // 全名 + 法人
+
+        final int num;
+
+        Variant(int num) {
+            this.num = num;
+        }
+
+        /** 生成查询词；不适用时返回 null */
+        String query(String name, String legal) {
+            return switch (this) {
+                case FULL, FULL_SMALL -> name;
+                case SHORT -> {
+                    String s = shortName(name);
+                    yield s.length() >= 2 && !s.equals(name) ? s : null;
+                }
+                case WITH_LEGAL -> legal != null && !legal.isBlank() ? name + " " + legal.trim() : null;
+            };
+        }
+    }
+
+    static class Stats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder sized = new LongAdder();     // 响应大小已知的请求数（bytes 只累计这些）
+        final LongAdder bytes = new LongAdder();
+        final LongAdder trials = new LongAdder();   // 有结论的尝试（命中或未命中）
+        final LongAdder matches = new LongAdder();
+    }
+
+    private final int maxVariants;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final Stats total = new Stats();
+    private static final Stats EMPTY = new Stats();   // 打分时查不到的键，不写入统计表
+
+    public QueryPlanner(int maxVariants) {
+        this.maxVariants = maxVariants;
+    }
+
+    static String shortName(String name) {
+        return name.replaceAll(SUFFIX_REGEX, "");
+    }
+
+    /** 公司名形状，如 "有限|中|中文" */
+    static String shapeOf(String name) {
+        String suffix = name.endsWith("股份有限公司") ? "股份"
+                : name.endsWith("有限公司") ? "有限"
+                : "其他";
+        int len = shortName(name).length();
+        String size = len <= 4 ? "短" : len <= 8 ? "中" : "长";
+        String script = name.matches(".*[A-Za-z].*") ? "含英文" : "中文";
+        return suffix + "|" + size + "|" + script;
+    }
+
+    /**
+     * 给出本公司要依次尝试的变体；tried 是之前几次尝试里已有结论的变体，
+     * 不再重复，且和本次计划合计不超过 maxVariants 个
+     */
+    public List<Variant> plan(String name, String legal, Set<Variant> tried) {
+        String shape = shapeOf(name);
+        List<Variant> candidates = new ArrayList<>();
+        for (Variant v : Variant.values()) {
+            if (!tried.contains(v) && v.query(name, legal) != null) candidates.add(v);
+        }
+        candidates.sort(Comparator.comparingDouble((Variant v) -> score(shape, v)).reversed());
+        if (candidates.size() > 1 && ThreadLocalRandom.current().nextDouble() < EXPLORE_RATE) {
+            Collections.swap(candidates, 0, 1);
+        }
+        return candidates.subList(0, Math.max(0, Math.min(maxVariants - tried.size(), candidates.size())));
+    }
+
+    /** 得分 = 平滑命中率 / 单次成本 */
+    double score(String shape, Variant v) {
+        Stats all = stats.getOrDefault(key("*", v), EMPTY);
+        Stats s = stats.getOrDefault(key(shape, v), EMPTY);
+        double prior = (all.matches.sum() + 1.0) / (all.trials.sum() + 2.0);
+        double p = (s.matches.sum() + PRIOR_WEIGHT * prior) / (s.trials.sum() + PRIOR_WEIGHT);
+
+        long req = s.sized.sum() > 0 ? s.sized.sum() : all.sized.sum();
+        long bytes = s.sized.sum() > 0 ? s.bytes.sum() : all.bytes.sum();
+        double avgBytes = req > 0 ? (double) bytes / req : v.num * DEFAULT_BYTES_PER_RESULT;
+        return p / (1 + avgBytes / BYTES_PER_REQUEST);
+    }
+
+    /** 每发出一次搜索请求调用（含被封、失败的请求）；bytes 为响应正文字节数，未知传 -1 */
+    public void recordRequest(String name, Variant v, long bytes) {
+        for (Stats s : List.of(stats(key(shapeOf(name), v)), stats(key("*", v)), total)) {
+            add(s, bytes);
+        }
+    }
+
+    /** 匹配后抓官网等后续请求：只计入总成本，不影响变体得分 */
+    public void recordFollowUp(long bytes) {
+        add(total, bytes);
+    }
+
+    private static void add(Stats s, long bytes) {
+        s.requests.increment();
+        if (bytes >= 0) {
+            s.sized.increment();
+            s.bytes.add(bytes);
+        }
+    }
+
+    /** 变体有结论时调用：搜到结果并匹配/未匹配，或确实无结果（疑似软封锁的空页不调用） */
+    public void recordOutcome(String name, Variant v, boolean matched) {
+        for (Stats s : List.of(stats(key(shapeOf(name), v)), stats(key("*", v)), total)) {
+            s.trials.increment();
+            if (matched) s.matches.increment();
+        }
+    }
+
+    /** 汇总：每个匹配到的官网平均花费的请求数和流量（含抓官网；大小未知的响应不计流量） */
+    public Map<String, Object> summary() {
+        long req = total.requests.sum(), bytes = total.bytes.sum(), matches = total.matches.sum();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("requests", req);
+        m.put("bytes", bytes);
+        m.put("matches", matches);
+        m.put("requestsPerMatch", matches > 0 ? Math.round(req * 100.0 / matches) / 100.0 : null);
+        m.put("kbPerMatch", matches > 0 ? bytes / 1024 / matches : null);
+        return m;
+    }
+
+    private Stats stats(String key) {
+        return stats.computeIfAbsent(key, k -> new Stats());
+    }
+
+    private static String key(String shape, Variant v) {
+        return shape + "\t" + v.name();
+    }
+
+    // ============ 持久化 ============
+
+    /** 读取历史统计（shape\tvariant\trequests\tbytes\ttrials\tmatches\tsized）；本次汇总只算本次运行 */
+    public void load(String file) {
+        Path p = Paths.get(file);
+        if (!Files.exists(p)) return;
+        try {
+            for (String line : Files.readAllLines(p, StandardCharsets.UTF_8)) {
+                String[] f = line.split("\t");
+                if (f.length < 6) continue;
+                Stats s = stats(f[0] + "\t" + f[1]);
+                s.requests.add(Long.parseLong(f[2]));
+                s.bytes.add(Long.parseLong(f[3]));
+                s.trials.add(Long.parseLong(f[4]));
+                s.matches.add(Long.parseLong(f[5]));
+                s.sized.add(f.length > 6 ? Long.parseLong(f[6]) : Long.parseLong(f[2]));  // 旧文件没有这一列
+            }
+            log("[查询规划] 已加载历史统计 " + stats.size() + " 项");
+        } catch (Exception e) {
+            log("[查询规划] 读取统计失败: " + e.getMessage());
+        }
+    }
+
+    public void save(String file) {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(stats).forEach((k, s) -> sb.append(k).append('\t')
+                .append(s.requests.sum()).append('\t').append(s.bytes.sum()).append('\t')
+                .append(s.trials.sum()).append('\t').append(s.matches.sum()).append('\t')
+                .append(s.sized.sum()).append('\n'));
+        try {
+            Path tmp = Paths.get(file + ".tmp");
+            Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, Paths.get(file), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            log("[查询规划] 保存统计失败: " + e.getMessage());
+        }
+    }
+
+    private static void log(String msg) {
+        System.out.println("[" + java.time.LocalTime.now().toString().substring(0, 8) + "] " + msg);
+    }
+}
@@ -0,0 +1,279 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 爬取结果翻页查询服务（本地 HTTP，只读）
+ *
+ * 翻页策略参考 .vscode/大数据量翻页优化方案总结.md：
+ *   前面若干页   -> OFFSET
+ *   最后若干页   -> 反向排序 ORDER BY id DESC
+ *   中间任意页   -> 内存行号索引：每 CHECKPOINT_ROWS 行记一个起始 id，后台异步建立并增量追加，
+ *                   定位到最近的检查点后 OFFSET 不超过 CHECKPOINT_ROWS
+ *   上一页/下一页 -> keyset 游标（id > ? / id < ?）
+ *
+ * 以只读模式（mode=ro）打开结果库，不建表不写入，不和爬虫争写锁
+ *
+ * GET /results?page=100000&size=20
+ * GET /results?after=12345&size=20
+ * GET /results?before=12345&size=20
+ */
+public class ResultQueryServer {
+
+    private static final int DEFAULT_PORT = 8765;
+    private static final String DEFAULT_DB = "results.db";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int OFFSET_MAX_ROWS = 2000;        // 偏移量在此之内直接 OFFSET
+    private static final int TAIL_MAX_ROWS = 2000;          // 距末尾在此之内反向扫描
+    private static final long INDEX_REFRESH_MS = 30000;     // 行号索引增量追加间隔
+    private static final int CHECKPOINT_ROWS = 1000;        // 行号索引每隔多少行记一个 id
+    private static final int INDEX_SCAN_ROWS = 100000;      // 建索引时每次读多少个 id（分段读，不长时间占用读事务）
+
+    private static final String COLUMNS = "id, company_name, legal_person, website, domain, emails, status, updated_at";
+
+    private final String dbUrl;
+    private final Connection conn;                          // 查询用只读连接
+    private final ReentrantLock connLock = new ReentrantLock();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // checkpoints[k] = 第 k*CHECKPOINT_ROWS 行（从0计）的 id；只由索引线程写，先写数组再更新 indexedRows
+    private volatile long[] checkpoints = new long[1024];
+    private volatile long indexedRows = 0;                  // 行号索引已覆盖的行数
+    private volatile long indexedMaxId = 0;                 // 行号索引覆盖的最大 id
+    private volatile long totalRows = 0;                    // 总行数（索引建立时顺带更新）
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String db = args.length > 1 ? args[1] : DEFAULT_DB;
+        new ResultQueryServer(db).start(port);
+    }
+
+    public ResultQueryServer(String dbFile) throws SQLException {
+        dbUrl = "jdbc:sqlite:file:" + dbFile + "?mode=ro";
+        conn = DriverManager.getConnection(dbUrl);
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA busy_timeout=5000");
+        }
+    }
+
+    public void start(int port) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/results", this::handleResults);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        log("[查询服务] 已启动: http://127.0.0.1:" + port + "/results");
+
+        Thread.startVirtualThread(this::indexLoop);
+    }
+
+    // ============ 行号索引 ============
+
+    /**
+     * 后台维护行号索引：首次全量建立，之后只为新增的 id 追加行号（结果 id 单调递增，不删除）
+     */
+    private void indexLoop() {
+        try (Connection ic = DriverManager.getConnection(dbUrl)) {
+            try (Statement st = ic.createStatement()) {
+                st.execute("PRAGMA busy_timeout=30000");
+            }
+            while (true) {
+                try {
+                    appendRowNumbers(ic);
+                } catch (SQLException e) {
+                    log("[查询服务] ✗ 行号索引更新失败: " + e.getMessage());
+                }
+                Thread.sleep(INDEX_REFRESH_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            log("[查询服务] ✗ 行号索引失败: " + e.getMessage());
+        }
+    }
+
+    private void appendRowNumbers(Connection ic) throws SQLException {
+        long start = System.currentTimeMillis();
+        long rows = indexedRows;
+        long lastId = indexedMaxId;
+        long added = 0;
+        try (PreparedStatement ps = ic.prepareStatement("SELECT id FROM results WHERE id > ? ORDER BY id LIMIT ?")) {
+            int n;
+            do {
+                ps.setLong(1, lastId);
+                ps.setInt(2, INDEX_SCAN_ROWS);
+                n = 0;
+                long[] cp = checkpoints;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong(1);
+                        if (rows % CHECKPOINT_ROWS == 0) {
+                            int k = (int) (rows / CHECKPOINT_ROWS);
+                            if (k == cp.length) cp = Arrays.copyOf(cp, cp.length * 2);
+                            cp[k] = lastId;
+                        }
+                        rows++;
+                        n++;
+                    }
+                }
+                checkpoints = cp;
+                indexedMaxId = lastId;
+                indexedRows = rows;
+                totalRows = rows;
+                added += n;
+            } while (n == INDEX_SCAN_ROWS);
+        }
+        if (added > 0) {
+            log("[查询服务] 行号索引追加 " + added + " 行，共 " + indexedRows + " 行，耗时 "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    // ============ 请求处理 ============
+
+    private void handleResults(HttpExchange ex) {
+        long start = System.nanoTime();
+        try {
+            Map<String, String> q = parseQuery(ex.getRequestURI().getRawQuery());
+            int size = Math.min(MAX_PAGE_SIZE, Math.max(1, intParam(q, "size", DEFAULT_PAGE_SIZE)));
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            List<Map<String, Object>> rows;
+            String strategy;
+
+            if (q.containsKey("after")) {
+                strategy = "keyset";
+                rows = select("SELECT " + COLUMNS + " FROM results WHERE id > ? ORDER BY id LIMIT ?",
+                    Long.parseLong(q.get("after")), size);
+            } else if (q.containsKey("before")) {
+                strategy = "keyset";
+                rows = select("SELECT " + COLUMNS + " FROM results WHERE id < ? ORDER BY id DESC LIMIT ?",
+                    Long.parseLong(q.get("before")), size);
+                Collections.reverse(rows);
+            } else {
+                int page = Math.max(1, intParam(q, "page", 1));
+                long offset = (long) (page - 1) * size;
+                long total = currentTotal();
+                body.put("page", page);
+                body.put("total", total);
+
+                if (offset <= OFFSET_MAX_ROWS) {
+                    strategy = "offset";
+                    rows = select("SELECT " + COLUMNS + " FROM results ORDER BY id LIMIT ? OFFSET ?", size, offset);
+                } else if (offset >= total) {
+                    strategy = "empty";
+                    rows = new ArrayList<>();
+                } else if (total - offset <= TAIL_MAX_ROWS) {
+                    // 尾页：反向扫描
+                    strategy = "reverse";
+                    long tailOffset = total - offset - size;
+                    int limit = (int) (tailOffset < 0 ? size + tailOffset : size);
+                    rows = select("SELECT " + COLUMNS + " FROM results ORDER BY id DESC LIMIT ? OFFSET ?",
+                        limit, Math.max(0, tailOffset));
+                    Collections.reverse(rows);
+                } else if (offset < indexedRows) {
+                    // 中间页：行号索引定位最近的检查点 id，再按主键顺序跳过不足 CHECKPOINT_ROWS 行
+                    strategy = "rownum";
+                    long fromId = checkpoints[(int) (offset / CHECKPOINT_ROWS)];
+                    rows = select("SELECT " + COLUMNS + " FROM results WHERE id >= ? ORDER BY id LIMIT ? OFFSET ?",
+                        fromId, size, offset % CHECKPOINT_ROWS);
+                } else {
+                    // 索引尚未建好：子查询只扫主键
+                    strategy = "subquery";
+                    rows = select("SELECT " + COLUMNS + " FROM results WHERE id >= " +
+                        "(SELECT id FROM results ORDER BY id LIMIT 1 OFFSET ?) ORDER BY id LIMIT ?", offset, size);
+                }
+            }
+
+            body.put("size", size);
+            body.put("strategy", strategy);
+            if (!rows.isEmpty()) {
+                body.put("prev", rows.get(0).get("id"));
+                body.put("next", rows.get(rows.size() - 1).get("id"));
+            }
+            body.put("elapsedMs", (System.nanoTime() - start) / 1_000_000.0);
+            body.put("rows", rows);
+            send(ex, 200, mapper.writeValueAsBytes(body));
+        } catch (NumberFormatException e) {
+            sendError(ex, 400, "参数错误: " + e.getMessage());
+        } catch (Exception e) {
+            log("[查询服务] ✗ " + e.getMessage());
+            sendError(ex, 500, "查询失败");
+        }
+    }
+
+    private void sendError(HttpExchange ex, int code, String message) {
+        try {
+            send(ex, code, mapper.writeValueAsBytes(Map.of("error", message)));
+        } catch (Exception e) {
+            log("[查询服务] 响应失败: " + e.getMessage());
+        }
+    }
+
+    /** 总行数：行号索引覆盖的部分 + 之后新增的行（只扫主键尾部） */
+    private long currentTotal() throws SQLException {
+        List<Map<String, Object>> r = select("SELECT COUNT(*) AS n FROM results WHERE id > ?", indexedMaxId);
+        return totalRows + ((Number) r.get(0).get("n")).longValue();
+    }
+
+    private List<Map<String, Object>> select(String sql, Object... params) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        connLock.lock();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData md = rs.getMetaData();
+                while (rs.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int c = 1; c <= md.getColumnCount(); c++) {
+                        row.put(md.getColumnLabel(c), rs.getObject(c));
+                    }
+                    rows.add(row);
+                }
+            }
+        } finally {
+            connLock.unlock();
+        }
+        return rows;
+    }
+
+    private static void send(HttpExchange ex, int code, byte[] body) {
+        try (OutputStream os = ex.getResponseBody()) {
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            ex.sendResponseHeaders(code, body.length);
+            os.write(body);
+        } catch (Exception e) {
+            log("[查询服务] 响应失败: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> map = new HashMap<>();
+        if (query == null || query.isEmpty()) return map;
+        for (String pair : query.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx <= 0) continue;
+            map.put(URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    private static int intParam(Map<String, String> q, String name, int def) {
+        String v = q.get(name);
+        return v == null || v.isEmpty() ? def : Integer.parseInt(v);
+    }
+
+    private static void log(String msg) {
+        System.out.println("[" + java.time.LocalTime.now().toString().substring(0, 8) + "] " + msg);
+    }
+}
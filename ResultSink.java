@@ -0,0 +1,21 @@
+import java.util.function.Consumer;
+
+/**
+ * 结果输出 - 每处理完一个公司调用一次 save
+ */
+public interface ResultSink extends AutoCloseable {
+
+    void save(GoogleSearchCrawler.CompanyInfo info);
+
+    /** 结果真正落盘后回调（带缓冲的实现在批量提交之后），用于记录断点续爬进度 */
+    void setOnPersisted(Consumer<GoogleSearchCrawler.CompanyInfo> listener);
+
+    /** 把缓冲中的结果落盘 */
+    default void flush() {
+    }
+
+    @Override
+    default void close() {
+        flush();
+    }
+}
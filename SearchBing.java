@@ -7,6 +7,9 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Base64;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 public class SearchBing {
 
@@ -14,26 +17,119 @@ public class SearchBing {
     private static final double MIN_DELAY = 0.8;
     private static final double MAX_DELAY = 1.8;
 
+    // ============ 批量搜索配置 ============
+    private static final int BATCH_CONCURRENCY = 8;          // 同时在途的请求数
+    private static final long BATCH_MIN_INTERVAL_MS = 250;   // 全局限速：两次请求的最小间隔
+
+    /** 单条搜索结果 */
+    public record BingResult(String title, String url) {}
+
+    /** 单个公司的搜索结果及耗时 */
+    public record BingQueryResult(String companyName, List<BingResult> results,
+                                  int attempts, long elapsedMs) {
+        public BingQueryResult {
+            results = List.copyOf(results);
+        }
+
+        public boolean found() {
+            return !results.isEmpty();
+        }
+    }
+
+    // 全局限速：下一个可用的请求时间点（所有批量任务共享）
+    private static final AtomicLong nextRequestAt = new AtomicLong(0);
+
+    /** 兼容旧接口：单个公司同步搜索，原始页面写入归档 */
     public static List<Map<String, String>> searchBing(String companyName) {
-        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+        List<Map<String, String>> list = new ArrayList<>();
+        // 同步写归档，返回时页面已落盘
+        for (BingResult r : query(companyName, Runnable::run, false).results()) {
+            Map<String, String> entry = new HashMap<>();
+            entry.put("title", r.title());
+            entry.put("url", r.url());
+            list.add(entry);
+        }
+        return list;
+    }
+
+    /** 批量搜索：默认并发与限速，不落盘原始页面 */
+    public static List<BingQueryResult> searchBatch(Stream<String> companyNames) {
+        return searchBatch(companyNames, BATCH_CONCURRENCY, false);
+    }
+
+    /**
+     * 批量搜索：虚拟线程并发执行，所有请求共享 BATCH_MIN_INTERVAL_MS 的全局限速。
+     * 返回顺序与输入顺序一致。
+     * archiveRaw 时原始页面由单独线程写入归档，返回前等待全部写完。
+     */
+    public static List<BingQueryResult> searchBatch(Stream<String> companyNames, int concurrency, boolean archiveRaw) {
+        Semaphore permits = new Semaphore(concurrency);
+        List<Future<BingQueryResult>> futures = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        ExecutorService archiver = archiveRaw
+                ? Executors.newSingleThreadExecutor(r -> new Thread(r, "bing-archive"))
+                : null;
+
+        long start = System.currentTimeMillis();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            companyNames
+                    .filter(name -> name != null && !name.isBlank())
+                    .forEach(name -> {
+                        names.add(name);
+                        futures.add(executor.submit(() -> {
+                            permits.acquire();
+                            try {
+                                return query(name, archiver, true);
+                            } finally {
+                                permits.release();
+                            }
+                        }));
+                    });
+        }
+
+        List<BingQueryResult> out = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                out.add(futures.get(i).get());
+            } catch (Exception e) {
+                // 保持与输入一一对应：异常的公司记为无结果
+                log("[批量] " + names.get(i) + " 任务异常: " + e.getMessage());
+                out.add(new BingQueryResult(names.get(i), List.of(), 0, 0));
+            }
+        }
+        if (archiver != null) awaitArchive(archiver);
+        log("[批量] 完成 " + out.size() + " 个, 命中 " + out.stream().filter(BingQueryResult::found).count()
+                + " 个, 总耗时 " + (System.currentTimeMillis() - start) + " ms");
+        return out;
+    }
+
+    /** 搜索单个公司并计时；archiver 为 null 时不写归档 */
+    private static BingQueryResult query(String companyName, Executor archiver, boolean rateLimited) {
+        long start = System.nanoTime();
+        int attempt = 0;
+        while (attempt < MAX_RETRIES) {
+            attempt++;
 
             String cleanName = companyName.replace(" ", "").replace("\u200b", "");
             String url = "https://www.bing.com/search?q=" + cleanName;
 
             log("[搜索] " + companyName + " - 第" + attempt + "次 - URL: " + url);
 
+            if (rateLimited) acquireRateSlot();
             String html = fetch(url);
             if (html == null || html.isEmpty()) {
-                sleepRandom();
+                if (!rateLimited) sleepRandom();
                 continue;
             }
-            CompanyLoader.writeFil(html,companyName+".srch.htm");
+            if (archiver != null) {
+                archiver.execute(() -> PageArchive.shared().append(PageArchive.TYPE_BING, companyName, url, html));
+            }
 
             log("[搜索] 响应长度: " + html.length());
 
-            List<Map<String, String>> results = parseResults(html);
+            List<BingResult> results = parseResults(html);
             if (!results.isEmpty()) {
-                return results;
+                return new BingQueryResult(companyName, results, attempt, elapsedMs(start));
             }
 
             // 检查是否被限流
@@ -43,15 +139,46 @@ public class SearchBing {
                 log("[搜索] 有结果但未匹配");
             }
 
-            sleepRandom();
+            // 批量模式由全局限速控制节奏，不再单独休眠
+            if (!rateLimited) sleepRandom();
         }
 
-        return Collections.emptyList();
+        return new BingQueryResult(companyName, List.of(), attempt, elapsedMs(start));
+    }
+
+    /** 预约全局限速的下一个时间槽，必要时等待 */
+    private static void acquireRateSlot() {
+        long now = System.currentTimeMillis();
+        long slot = nextRequestAt.getAndUpdate(prev -> Math.max(prev, now) + BATCH_MIN_INTERVAL_MS);
+        long wait = Math.max(slot, now) - now;
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** 关闭归档线程并等待排队的页面写完 */
+    private static void awaitArchive(ExecutorService archiver) {
+        archiver.shutdown();
+        try {
+            if (!archiver.awaitTermination(1, TimeUnit.MINUTES)) {
+                log("[归档] ⚠ 等待写入超时，仍有页面未落盘");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
     }
 
     /** 解析 Bing 搜索结果 */
-    private static List<Map<String, String>> parseResults(String html) {
-        List<Map<String, String>> results = new ArrayList<>();
+    private static List<BingResult> parseResults(String html) {
+        List<BingResult> results = new ArrayList<>();
 
         Document doc = Jsoup.parse(html);
         Elements items = doc.select("li.b_algo");
@@ -70,10 +197,7 @@ public class SearchBing {
             String title = link.text().trim();
 
             if (href != null && isValidUrl(href)) {
-                Map<String, String> entry = new HashMap<>();
-                entry.put("title", title);
-                entry.put("url", href);
-                results.add(entry);
+                results.add(new BingResult(title, href));
 
                 log("[搜索] 发现: " + title + " -> " + href);
             }
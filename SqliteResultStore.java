@@ -0,0 +1,324 @@
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 本地 SQLite 结果库（需要 org.xerial:sqlite-jdbc）
+ *
+ * 结果先进入内存缓冲，满 BATCH_SIZE 条或超过 FLUSH_INTERVAL_MS 时
+ * 在一个事务里批量写入；按公司名 upsert，公司名/域名/状态均建索引。
+ * 写入失败（如库被占用）时整批放回缓冲，下次保存或 flush 时重试。
+ * 后台线程按 FLUSH_INTERVAL_MS 定时检查，爬取变慢或暂停时缓冲也会及时落盘；
+ * 批量提交成功后才回调 onPersisted（记录进度），进程被杀时未提交的结果下次会重新爬取。
+ * 同时保存官网的 ETag/Last-Modified，供增量刷新发条件请求。
+ * CSV 和 xlsx 都从库里导出。
+ */
+public final class SqliteResultStore implements ResultSink {
+
+    private static final int BATCH_SIZE = 200;
+    private static final long FLUSH_INTERVAL_MS = 5000;
+    private static final int BUSY_TIMEOUT_MS = 10000;   // 库被其他连接写锁占用时最多等待
+
+    static final String STATUS_FOUND = "FOUND";
+    static final String STATUS_NOT_FOUND = "NOT_FOUND";
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO results(company_name, legal_person, website, domain, emails, email_count, status, updated_at, " +
+        "etag, last_modified) " +
+        "VALUES(?,?,?,?,?,?,?,?,?,?) " +
+        "ON CONFLICT(company_name) DO UPDATE SET legal_person=excluded.legal_person, website=excluded.website, " +
+        "domain=excluded.domain, emails=excluded.emails, email_count=excluded.email_count, " +
+        "status=excluded.status, updated_at=excluded.updated_at, " +
+        "etag=excluded.etag, last_modified=excluded.last_modified";
+
+    private static final String SELECT_COLUMNS = "company_name, legal_person, website, emails, etag, last_modified";
+
+    private final Connection conn;
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<GoogleSearchCrawler.CompanyInfo> buffer = new ArrayList<>();
+    private long lastFlush = System.currentTimeMillis();
+    private boolean closed = false;
+    private volatile Consumer<GoogleSearchCrawler.CompanyInfo> onPersisted = info -> { };
+    private final Thread flusher;
+
+    public SqliteResultStore(String dbFile) throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA journal_mode=WAL");
+            st.execute("PRAGMA synchronous=NORMAL");
+            st.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MS);
+            st.execute("CREATE TABLE IF NOT EXISTS results (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "company_name TEXT NOT NULL, " +
+                "legal_person TEXT, " +
+                "website TEXT, " +
+                "domain TEXT, " +
+                "emails TEXT, " +
+                "email_count INTEGER NOT NULL DEFAULT 0, " +
+                "status TEXT NOT NULL, " +
+                "updated_at INTEGER NOT NULL, " +
+                "etag TEXT, " +
+                "last_modified TEXT)");
+            addColumnIfMissing(st, "etag", "TEXT");
+            addColumnIfMissing(st, "last_modified", "TEXT");
+            st.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_results_company ON results(company_name)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_results_domain ON results(domain)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_results_status ON results(status, email_count)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_results_refresh ON results(status, updated_at)");
+        }
+        conn.setAutoCommit(false);
+        flusher = Thread.ofVirtual().name("result-flush").start(this::flushLoop);
+    }
+
+    @Override
+    public void setOnPersisted(Consumer<GoogleSearchCrawler.CompanyInfo> listener) {
+        onPersisted = listener;
+    }
+
+    /** 定时落盘：距上次写入超过 FLUSH_INTERVAL_MS 且缓冲非空时写一批 */
+    private void flushLoop() {
+        try {
+            while (true) {
+                Thread.sleep(FLUSH_INTERVAL_MS);
+                boolean due;
+                lock.lock();
+                try {
+                    if (closed) return;
+                    due = !buffer.isEmpty() && System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL_MS;
+                } finally {
+                    lock.unlock();
+                }
+                if (due) flush();
+            }
+        } catch (InterruptedException e) {
+            // close() 时结束
+        }
+    }
+
+    @Override
+    public void save(GoogleSearchCrawler.CompanyInfo info) {
+        List<GoogleSearchCrawler.CompanyInfo> toWrite = null;
+        lock.lock();
+        try {
+            buffer.add(info);
+            if (buffer.size() >= BATCH_SIZE || System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL_MS) {
+                toWrite = buffer;
+                buffer = new ArrayList<>();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (toWrite != null) writeBatch(toWrite);
+    }
+
+    @Override
+    public void flush() {
+        List<GoogleSearchCrawler.CompanyInfo> toWrite;
+        lock.lock();
+        try {
+            toWrite = buffer;
+            buffer = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        writeBatch(toWrite);
+    }
+
+    @Override
+    public void close() {
+        flusher.interrupt();
+        flush();
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            if (!buffer.isEmpty()) log("[结果库] ✗ 关闭时仍有 " + buffer.size() + " 条未能写入，下次运行重新爬取");
+            conn.close();
+        } catch (SQLException e) {
+            log("[结果库] 关闭失败: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 一个事务写入一批；失败时整批放回缓冲，不丢结果。提交成功后逐条回调 onPersisted */
+    private void writeBatch(List<GoogleSearchCrawler.CompanyInfo> batch) {
+        if (batch.isEmpty()) return;
+        lock.lock();
+        try {
+            if (closed) {
+                log("[结果库] ✗ 已关闭，" + batch.size() + " 条未写入");
+                return;
+            }
+            long now = System.currentTimeMillis();
+            upsert(batch, now);
+            lastFlush = now;
+            log("[结果库] 批量写入 " + batch.size() + " 条");
+        } catch (SQLException e) {
+            log("[结果库] ✗ 批量写入失败，" + batch.size() + " 条放回缓冲稍后重试: " + e.getMessage());
+            batch.addAll(buffer);
+            buffer = batch;
+            return;
+        } finally {
+            lock.unlock();
+        }
+        batch.forEach(onPersisted);
+    }
+
+    /** 库里还没有任何结果 */
+    public boolean isEmpty() {
+        boolean[] empty = {true};
+        query("SELECT 1 FROM results LIMIT 1", rs -> empty[0] = false);
+        return empty[0];
+    }
+
+    /** 导入旧结果（如 CSV 模式的 results.csv），updatedAt 为这些结果的更新时间；失败时抛出 */
+    public void importResults(Collection<GoogleSearchCrawler.CompanyInfo> rows, long updatedAt) throws SQLException {
+        if (rows.isEmpty()) return;
+        lock.lock();
+        try {
+            upsert(rows, updatedAt);
+            log("[结果库] 已导入旧结果 " + rows.size() + " 条");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 调用方持有 lock；失败时回滚并抛出 */
+    private void upsert(Collection<GoogleSearchCrawler.CompanyInfo> rows, long updatedAt) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+            for (GoogleSearchCrawler.CompanyInfo info : rows) {
+                boolean found = GoogleSearchCrawler.isFound(info.website);
+                ps.setString(1, info.companyName);
+                ps.setString(2, info.legalPerson);
+                ps.setString(3, found ? info.website : null);
+                ps.setString(4, found ? domainOf(info.website) : null);
+                ps.setString(5, String.join("; ", info.emails));
+                ps.setInt(6, info.emails.size());
+                ps.setString(7, found ? STATUS_FOUND : STATUS_NOT_FOUND);
+                ps.setLong(8, updatedAt);
+                ps.setString(9, info.etag);
+                ps.setString(10, info.lastModified);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            try { conn.rollback(); } catch (SQLException ignored) { }
+            throw e;
+        }
+    }
+
+    /** 已入库的公司名（用于断点续爬） */
+    public Set<String> completedCompanies() {
+        Set<String> names = new HashSet<>();
+        query("SELECT company_name FROM results", rs -> names.add(rs.getString(1)));
+        return names;
+    }
+
+    /** 有邮箱的公司 */
+    public List<String> companiesWithEmails() {
+        List<String> names = new ArrayList<>();
+        query("SELECT company_name FROM results WHERE status=? AND email_count > 0 ORDER BY id",
+            rs -> names.add(rs.getString(1)), STATUS_FOUND);
+        return names;
+    }
+
+    /** 按入库顺序遍历全部结果 */
+    public void forEachResult(Consumer<GoogleSearchCrawler.CompanyInfo> action) {
+        query("SELECT " + SELECT_COLUMNS + " FROM results ORDER BY id", rs -> action.accept(toInfo(rs)));
+    }
+
+    /** 已找到官网、且更新时间早于 cutoff 的结果（刷新模式使用） */
+    public List<GoogleSearchCrawler.CompanyInfo> findStale(long cutoff) {
+        List<GoogleSearchCrawler.CompanyInfo> list = new ArrayList<>();
+        query("SELECT " + SELECT_COLUMNS + " FROM results WHERE status=? AND updated_at<? ORDER BY updated_at",
+            rs -> list.add(toInfo(rs)), STATUS_FOUND, cutoff);
+        return list;
+    }
+
+    private static GoogleSearchCrawler.CompanyInfo toInfo(ResultSet rs) throws SQLException {
+        GoogleSearchCrawler.CompanyInfo info = new GoogleSearchCrawler.CompanyInfo();
+        info.companyName = rs.getString(1);
+        info.legalPerson = rs.getString(2);
+        String website = rs.getString(3);
+        info.website = website != null ? website : "未找到匹配";
+        String emails = rs.getString(4);
+        if (emails != null && !emails.isEmpty()) info.emails.addAll(Arrays.asList(emails.split("; ")));
+        info.etag = rs.getString(5);
+        info.lastModified = rs.getString(6);
+        return info;
+    }
+
+    /** 从库导出 CSV（覆盖写） */
+    public void exportCsv(String file) {
+        Path tmp = Paths.get(file + ".tmp");
+        try (var w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            w.write(CsvResultSink.HEADER);
+            forEachResult(info -> {
+                try {
+                    w.write(CsvResultSink.toLine(info.companyName, String.join("; ", info.emails),
+                        info.legalPerson, info.website));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } catch (Exception e) {
+            log("[结果库] ✗ 导出CSV失败: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp, Paths.get(file), StandardCopyOption.REPLACE_EXISTING);
+            log("[结果库] 已导出: " + file);
+        } catch (Exception e) {
+            log("[结果库] ✗ 导出CSV失败: " + e.getMessage());
+        }
+    }
+
+    interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    private void query(String sql, RowHandler handler, Object... params) {
+        lock.lock();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) handler.handle(rs);
+            }
+            conn.commit();  // 结束读事务，避免阻塞 WAL checkpoint
+        } catch (SQLException e) {
+            log("[结果库] 查询失败: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void addColumnIfMissing(Statement st, String column, String type) throws SQLException {
+        try (ResultSet rs = st.executeQuery("PRAGMA table_info(results)")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return;
+            }
+        }
+        st.execute("ALTER TABLE results ADD COLUMN " + column + " " + type);
+    }
+
+    static String domainOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            if (host == null) return null;
+            host = host.toLowerCase();
+            return host.startsWith("www.") ? host.substring(4) : host;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void log(String msg) {
+        System.out.println("[" + java.time.LocalTime.now().toString().substring(0, 8) + "] " + msg);
+    }
+}
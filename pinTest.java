@@ -0,0 +1,226 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * 虚拟线程钉住检测，两部分都通过才算通过（退出码 0）：
+ *
+ * 1. 字节码检查：爬虫在虚拟线程上走到的类（含内部类、lambda）不得有 synchronized 方法或 monitorenter。
+ *    JDK 21 里虚拟线程在 synchronized 里做文件写入、或争抢 monitor 时不会 park，
+ *    jdk.VirtualThreadPinned 不一定有事件，所以把锁类型直接查死，不依赖运行时是否碰巧争用
+ * 2. 运行检查：对本地桩服务跑一遍 CSV 模式爬取（300 家公司、并发 50、无延迟，
+ *    含写 progress.txt / failed.txt 的路径），JFR 记录 jdk.VirtualThreadPinned（阈值0）
+ *    和虚拟线程在上述类里的 jdk.JavaMonitorEnter，有任何事件即失败
+ *
+ * 爬取在临时目录的子进程里运行，progress.txt / results.csv 不会写到当前目录
+ */
+public class pinTest
+{
+    // 在爬取虚拟线程上执行的类
+    private static final List<Class<?>> CHECKED = List.of(
+            GoogleSearchCrawler.class, CrawlScheduler.class, CircuitBreaker.class, QueryPlanner.class,
+            ResultSink.class, CsvResultSink.class, SqliteResultStore.class, PageArchive.class);
+
+    private static final int COMPANIES = 300;
+    private static final int CONCURRENCY = 50;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("child")) {
+            System.exit(runChild());
+        }
+
+        List<String> monitors = scanMonitors();
+        monitors.forEach(m -> System.out.println("✗ " + m));
+        System.out.println("字节码 synchronized/monitorenter: " + monitors.size() + " 处");
+
+        // 工作目录变了，类路径要换成绝对路径
+        List<String> cp = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            cp.add(Paths.get(entry).toAbsolutePath().toString());
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Path dir = Files.createTempDirectory("pinTest");
+
+        Process p = new ProcessBuilder(java, "-cp", String.join(File.pathSeparator, cp), "pinTest", "child")
+                .directory(dir.toFile())
+                .inheritIO()
+                .start();
+        int code = p.waitFor();
+        if (!monitors.isEmpty()) code = 1;
+        System.out.println(code == 0 ? "✓ 未检测到虚拟线程钉住" : "✗ 检测到虚拟线程钉住，详见上方输出 (" + dir + ")");
+        System.exit(code);
+    }
+
+    // ============ 字节码检查 ============
+
+    /** 用 javap 反汇编 CHECKED 中的类及其内部类，找 synchronized 方法和 monitorenter */
+    private static List<String> scanMonitors() throws Exception {
+        List<String> classNames = new ArrayList<>();
+        for (Class<?> c : CHECKED) {
+            classNames.add(c.getName());
+            URL url = c.getResource(c.getSimpleName() + ".class");
+            if (url == null || !url.getProtocol().equals("file")) continue;
+            Path classDir = Paths.get(url.toURI()).getParent();
+            try (Stream<Path> files = Files.list(classDir)) {
+                files.map(f -> f.getFileName().toString())
+                        .filter(n -> n.startsWith(c.getSimpleName() + "$") && n.endsWith(".class"))
+                        .map(n -> n.substring(0, n.length() - ".class".length()))
+                        .sorted()
+                        .forEach(classNames::add);
+            }
+        }
+
+        List<String> cmd = new ArrayList<>(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "javap").toString(),
+                "-c", "-p", "-cp", System.getProperty("java.class.path")));
+        cmd.addAll(classNames);
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (p.waitFor() != 0) throw new IllegalStateException("javap 失败:\n" + out);
+
+        List<String> found = new ArrayList<>();
+        String currentClass = "?", currentMethod = "?";
+        for (String line : out.split("\n")) {
+            String t = line.trim();
+            if (line.matches("^(public |final |abstract |)*(class|interface|enum) .*")
+                    || line.matches("^\\S.*(class|interface) .*\\{$")) {
+                currentClass = t;
+            } else if (line.startsWith("  ") && !line.startsWith("   ") && t.endsWith(";")) {
+                currentMethod = t;
+                if ((" " + t).contains(" synchronized ")) found.add(currentClass + " -> " + t);
+            } else if (t.contains("monitorenter")) {
+                found.add(currentClass + " -> " + currentMethod + " 中有 synchronized 块");
+            }
+        }
+        return found;
+    }
+
+    // ============ 运行检查 ============
+
+    private static int runChild() throws Exception {
+        HttpServer server = startStub();
+        GoogleSearchCrawler.searchBaseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        GoogleSearchCrawler.useResultDb = false;   // 走 CsvResultSink + saveProgress
+        GoogleSearchCrawler.applySettings(Map.of(
+                "concurrency", String.valueOf(CONCURRENCY),
+                "minDelayMs", "0", "maxDelayMs", "0",
+                "maxRetries", "0"));               // 网络失败直接放弃，走 saveFailed
+
+        // 每10家：1家搜索返回500（放弃，写 failed.txt），1家结果不匹配，其余匹配后抓官网
+        List<String> companies = new ArrayList<>();
+        int expectFailed = 0;
+        for (int i = 0; i < COMPANIES; i++) {
+            switch (i % 10) {
+                case 0 -> {
+                    companies.add("斷線測試" + i + "有限公司");
+                    expectFailed++;
+                }
+                case 1 -> companies.add("無匹配測試" + i + "有限公司");
+                default -> companies.add("台灣測試" + i + "股份有限公司");
+            }
+        }
+
+        Path jfr = Paths.get("pinned.jfr");
+        try (Recording rec = new Recording()) {
+            rec.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            rec.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO).withStackTrace();
+            rec.start();
+
+            GoogleSearchCrawler.openResultSink();
+            GoogleSearchCrawler.crawl(companies);
+            GoogleSearchCrawler.resultSink.close();
+
+            rec.stop();
+            rec.dump(jfr);
+        } finally {
+            server.stop(0);
+        }
+
+        // 确认确实走到了 CSV / 进度 / 失败 三条写入路径，否则检查没有意义
+        long progress = Files.exists(Paths.get("progress.txt")) ? Files.readAllLines(Paths.get("progress.txt")).size() : 0;
+        long failed = Files.exists(Paths.get("failed.txt")) ? Files.readAllLines(Paths.get("failed.txt")).size() : 0;
+        long csvRows = Files.exists(Paths.get("results.csv"))
+                ? Files.readAllLines(Paths.get("results.csv"), StandardCharsets.UTF_8).size() - 1 : 0;
+        System.out.println("progress.txt: " + progress + " | failed.txt: " + failed + " | results.csv: " + csvRows);
+        boolean covered = progress == COMPANIES - expectFailed && failed == expectFailed && csvRows == progress;
+        if (!covered) System.out.println("✗ 写入路径覆盖不全，预期进度 " + (COMPANIES - expectFailed) + " 条、失败 " + expectFailed + " 条");
+
+        Set<String> checked = new HashSet<>();
+        CHECKED.forEach(c -> checked.add(c.getName()));
+        int count = 0;
+        for (RecordedEvent e : RecordingFile.readAllEvents(jfr)) {
+            if (e.getEventType().getName().equals("jdk.JavaMonitorEnter")) {
+                if (e.getThread() == null || !e.getThread().isVirtual() || e.getStackTrace() == null) continue;
+                List<RecordedFrame> frames = e.getStackTrace().getFrames();
+                if (frames.isEmpty()) continue;
+                String top = frames.get(0).getMethod().getType().getName();
+                if (!checked.contains(top.contains("$") ? top.substring(0, top.indexOf('$')) : top)) continue;
+            }
+            System.out.println(e);
+            count++;
+        }
+        System.out.println("VirtualThreadPinned / 虚拟线程 monitor 争用事件数: " + count);
+        return count == 0 && covered ? 0 : 1;
+    }
+
+    /** 本地桩：/search 返回以查询词为标题的结果（"無匹配"开头的返回无关标题，"斷線"开头的返回500），/site 返回带邮箱的官网 */
+    private static HttpServer startStub() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor());
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        server.createContext("/search", ex -> {
+            String q = queryParam(ex, "q");
+            if (q.startsWith("斷線")) {
+                respond(ex, 500, "<html><body>error</body></html>");
+                return;
+            }
+            String title = q.startsWith("無匹配") ? "不相關的網站" : q;
+            respond(ex, 200, "<html><body><div class=\"g\"><a href=\"" + base + "/site?n=" + Math.abs(q.hashCode())
+                    + "\"><h3>" + title + "</h3></a></div></body></html>");
+        });
+        server.createContext("/site", ex -> {
+            String n = queryParam(ex, "n");
+            respond(ex, 200, "<html><body>聯絡我們 service" + n + "@example.com.tw</body></html>");
+        });
+        server.start();
+        return server;
+    }
+
+    private static String queryParam(HttpExchange ex, String name) {
+        String query = ex.getRequestURI().getRawQuery();
+        if (query == null) return "";
+        for (String pair : query.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0 && pair.substring(0, idx).equals(name)) {
+                return URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return "";
+    }
+
+    private static void respond(HttpExchange ex, int code, String html) {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream os = ex.getResponseBody()) {
+            ex.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            ex.sendResponseHeaders(code, body.length);
+            os.write(body);
+        } catch (Exception e) {
+            System.out.println("[桩服务] 响应失败: " + e.getMessage());
+        }
+    }
+}
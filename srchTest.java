@@ -1,5 +1,6 @@
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 public class srchTest
 {
@@ -14,5 +15,10 @@ public class srchTest
             System.out.println(r.get("title") + " -> " + r.get("url"));
         }
 
+        // 批量搜索
+        for (SearchBing.BingQueryResult q : SearchBing.searchBatch(Stream.of("台积电", "鸿海精密", "联发科"))) {
+            System.out.println(q.companyName() + " 结果: " + q.results().size() + " 耗时: " + q.elapsedMs() + "ms");
+        }
+
     }
 }